@@ -0,0 +1,109 @@
+/* *****************************************************************************
+ *  Compilation:  javac AbstractLattice.java
+ *
+ *  Union-find shared by the flat-array lattices (FastPercolation,
+ *  TriangularPercolation, CubicPercolation, BondPercolation).
+ *  Subclasses lay their sites out in state[] however suits them, usually with
+ *  a ring of blocked sentinel positions so that neighbours are plain index
+ *  offsets, and call makeSet() / union() from their own open methods.
+ *
+ *  - union by rank, find with path halving;
+ *  - every root carries TOP / BOTTOM flags telling whether its component
+ *    touches the top / bottom boundary, so isFull is one find() without
+ *    backwash and percolates() is a field read;
+ *  - an entry is initialised by makeSet(), reset() only clears state[].
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+public abstract class AbstractLattice implements Lattice {
+
+    // bits of state[]
+    protected static final byte OPEN = 1;
+    protected static final byte TOP = 2;      // meaningful on roots only
+    protected static final byte BOTTOM = 4;   // meaningful on roots only
+
+    protected final byte[] state;   // OPEN / TOP / BOTTOM bits per position
+    private final int[] parent;     // parent[i] = parent of i, valid after makeSet(i)
+    private final byte[] rank;      // rank[i] = rank of the tree rooted at i
+    private int nbOpen;
+    private boolean percolates;
+
+    // union-find over positions [0, positions), all blocked
+    protected AbstractLattice(int positions) {
+        state = new byte[positions];
+        parent = new int[positions];
+        rank = new byte[positions];
+        nbOpen = 0;
+        percolates = false;
+    }
+
+    // blocks everything again without reallocating
+    public void reset() {
+        Arrays.fill(state, (byte) 0);
+        nbOpen = 0;
+        percolates = false;
+    }
+
+    // returns the number of open elements
+    public int numberOfOpenElements() {
+        return nbOpen;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // to be called once per element opened
+    protected final void countOpen() {
+        nbOpen++;
+    }
+
+    // makes p a component of its own with the given state bits
+    protected final void makeSet(int p, byte flags) {
+        state[p] = flags;
+        parent[p] = p;
+        rank[p] = 0;
+        if ((flags & (TOP | BOTTOM)) == (TOP | BOTTOM)) percolates = true;
+    }
+
+    protected final boolean isOpenAt(int p) {
+        return (state[p] & OPEN) != 0;
+    }
+
+    // is the component of p connected to the top?
+    protected final boolean isTopConnected(int p) {
+        return (state[find(p)] & TOP) != 0;
+    }
+
+    // root of the tree containing p, halving the path on the way up
+    protected final int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    // merges the trees containing p and q and combines their TOP / BOTTOM flags
+    protected final void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return;
+
+        int root;
+        if (rank[rootP] < rank[rootQ]) {
+            parent[rootP] = rootQ;
+            root = rootQ;
+        }
+        else {
+            parent[rootQ] = rootP;
+            if (rank[rootP] == rank[rootQ]) rank[rootP]++;
+            root = rootP;
+        }
+        byte flags = (byte) (state[rootP] | state[rootQ]);
+        state[root] = flags;
+        if ((flags & (TOP | BOTTOM)) == (TOP | BOTTOM)) percolates = true;
+    }
+}
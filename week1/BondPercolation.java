@@ -0,0 +1,121 @@
+/* *****************************************************************************
+ *  Compilation:  javac BondPercolation.java
+ *  Execution:    java BondPercolation n trials seed [threads]
+ *
+ *  Bond percolation on an n-by-n square lattice: all sites are present and
+ *  the bonds between neighbouring sites are opened one at a time. The system
+ *  percolates when row 1 is connected to row n.
+ *
+ *  Bonds are the elements: the n * (n - 1) horizontal bonds first, row by
+ *  row, then the (n - 1) * n vertical bonds, row by row. Bond i joins two
+ *  sites whose positions follow from i, so opening a bond is one union().
+ *  The bond percolation threshold of this lattice is exactly 1/2.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+
+public class BondPercolation extends AbstractLattice {
+
+    private final int gridSize;        // n
+    private final int nbHorizontal;    // n * (n - 1)
+    private final boolean[] bonds;     // bonds[i] = is bond i open?
+
+    // creates n-by-n lattice, with all bonds initially blocked
+    public BondPercolation(int n) {
+        super(checkedPositions(n));
+        gridSize = n;
+        nbHorizontal = n * (n - 1);
+        bonds = new boolean[2 * nbHorizontal];
+        initSites();
+    }
+
+    // n^2 sites, at least two rows so that percolation needs a bond, and
+    // the 2 * n * (n - 1) bonds must fit in an int (n <= 32768)
+    private static int checkedPositions(int n) {
+        if (n <= 1 || 2L * n * (n - 1) > Integer.MAX_VALUE) throw new IllegalArgumentException();
+        return n * n;
+    }
+
+    // blocks all bonds again, every site becomes a component of its own
+    public void reset() {
+        super.reset();
+        Arrays.fill(bonds, false);
+        initSites();
+    }
+
+    private void initSites() {
+        int last = gridSize * (gridSize - 1);
+        for (int p = 0; p < gridSize; p++) {
+            makeSet(p, TOP);
+        }
+        for (int p = gridSize; p < last; p++) {
+            makeSet(p, (byte) 0);
+        }
+        for (int p = last; p < gridSize * gridSize; p++) {
+            makeSet(p, BOTTOM);
+        }
+    }
+
+    // opens the bond between (row, col) and (row, col + 1), row in [1, n], col in [1, n - 1]
+    public void openRight(int row, int col) {
+        if (row <= 0 || row > gridSize || col <= 0 || col >= gridSize) {
+            throw new IllegalArgumentException();
+        }
+        openElement((row - 1) * (gridSize - 1) + col - 1);
+    }
+
+    // opens the bond between (row, col) and (row + 1, col), row in [1, n - 1], col in [1, n]
+    public void openDown(int row, int col) {
+        if (row <= 0 || row >= gridSize || col <= 0 || col > gridSize) {
+            throw new IllegalArgumentException();
+        }
+        openElement(nbHorizontal + (row - 1) * gridSize + col - 1);
+    }
+
+    // is the site (row, col) connected to row 1 through open bonds?
+    public boolean isFull(int row, int col) {
+        if (row <= 0 || row > gridSize || col <= 0 || col > gridSize) {
+            throw new IllegalArgumentException();
+        }
+        return isTopConnected((row - 1) * gridSize + col - 1);
+    }
+
+    public int elements() {
+        return bonds.length;
+    }
+
+    public void openElement(int i) {
+        if (i < 0 || i >= bonds.length) throw new IllegalArgumentException();
+        if (bonds[i]) return;
+        bonds[i] = true;
+        countOpen();
+        if (i < nbHorizontal) {
+            // site (r, c) to (r, c + 1), 0-based
+            int r = i / (gridSize - 1);
+            int c = i % (gridSize - 1);
+            int p = r * gridSize + c;
+            union(p, p + 1);
+        }
+        else {
+            // site (r, c) to (r + 1, c), 0-based
+            int p = i - nbHorizontal;
+            union(p, p + gridSize);
+        }
+    }
+
+    // test client: threshold estimate through the PercolationStats driver
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        long seed = Long.parseLong(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                                      : Runtime.getRuntime().availableProcessors();
+        PercolationStats stats = new PercolationStats(() -> new BondPercolation(n),
+                                                      trials, seed, threads,
+                                                      PercolationStats.Sampling.PERMUTATION);
+        StdOut.println(String.format("mean\t = %f", stats.mean()));
+        StdOut.println(String.format("stddev\t = %f", stats.stddev()));
+    }
+}
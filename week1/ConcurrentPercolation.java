@@ -0,0 +1,182 @@
+/* *****************************************************************************
+ *  Compilation:  javac ConcurrentPercolation.java
+ *  Execution:    java ConcurrentPercolation n threads
+ *
+ *  Percolation on one n-by-n grid shared by several threads that open sites
+ *  concurrently. Nothing is locked:
+ *  - open state is one int per site, claimed with compareAndSet, so exactly
+ *    one thread performs the unions of a site;
+ *  - the union-find is lock-free in the style of Anderson and Woll: find()
+ *    halves paths with compareAndSet and never waits, union() links one root
+ *    under the other with a single compareAndSet and retries if either root
+ *    has moved meanwhile. Roots are ordered by a fixed scrambled priority
+ *    (an odd multiplier is a bijection on int), which spreads the links
+ *    like random linking and keeps the trees shallow;
+ *  - backwash is avoided with two union-finds: `full` joins the sites and a
+ *    virtual top, `perc` the sites, the virtual top and a virtual bottom.
+ *
+ *  Queries are linearizable. sameSet() only answers false once it has seen
+ *  both roots still be roots at one moment. Once open() returns, every later
+ *  isFull() / percolates() sees all of its unions. A query running alongside
+ *  an open() may see only some of them, as if it ran just before that open
+ *  completed.
+ *
+ *  Two neighbours opened at the same time are still connected: each thread
+ *  publishes its own site before reading the other's, so at least one of
+ *  them sees the other one open.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class ConcurrentPercolation {
+
+    private final int gridSize;
+    private final int top;                    // virtual top site, n * n
+    private final int bottom;                 // virtual bottom site, n * n + 1
+    private final AtomicIntegerArray open;    // 1 if the site is open
+    private final AtomicIntegerArray full;    // parents: sites + virtual top
+    private final AtomicIntegerArray perc;    // parents: sites + virtual top and bottom
+    private final AtomicInteger nbOpenSites;
+
+    // creates n-by-n grid, with all sites initially blocked
+    public ConcurrentPercolation(int n) {
+        if (n <= 0 || n > 46340) throw new IllegalArgumentException();
+        gridSize = n;
+        top = n * n;
+        bottom = n * n + 1;
+        open = new AtomicIntegerArray(n * n);
+        full = new AtomicIntegerArray(n * n + 1);
+        perc = new AtomicIntegerArray(n * n + 2);
+        for (int i = 0; i < n * n + 2; i++) {
+            if (i <= top) full.set(i, i);
+            perc.set(i, i);
+        }
+        nbOpenSites = new AtomicInteger();
+    }
+
+    // opens the site (row, col) if it is not open already, safe to call from any thread
+    // by convention row and col are integers from 1 to n where (1, 1) is upper left site
+    public void open(int row, int col) {
+        int p = index(row, col);
+        if (!open.compareAndSet(p, 0, 1)) return;
+        nbOpenSites.incrementAndGet();
+
+        if (row == 1) {
+            union(full, p, top);
+            union(perc, p, top);
+        }
+        if (row == gridSize) union(perc, p, bottom);
+        if (row > 1) connect(p, p - gridSize);
+        if (row < gridSize) connect(p, p + gridSize);
+        if (col > 1) connect(p, p - 1);
+        if (col < gridSize) connect(p, p + 1);
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        return open.get(index(row, col)) != 0;
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        int p = index(row, col);
+        return open.get(p) != 0 && sameSet(full, p, top);
+    }
+
+    // returns the number of open sites
+    public int numberOfOpenSites() {
+        return nbOpenSites.get();
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return sameSet(perc, top, bottom);
+    }
+
+    private int index(int row, int col) {
+        if (row <= 0 || row > gridSize || col <= 0 || col > gridSize) {
+            throw new IllegalArgumentException();
+        }
+        return (row - 1) * gridSize + col - 1;
+    }
+
+    // joins p with its neighbour q in both union-finds if q is open
+    private void connect(int p, int q) {
+        if (open.get(q) == 0) return;
+        union(full, p, q);
+        union(perc, p, q);
+    }
+
+    // linking order of roots: a fixed bijective scramble of the index
+    private static int priority(int p) {
+        return p * 0x9E3779B9;
+    }
+
+    // root of p, halving the path with compareAndSet on the way up.
+    // A failed compareAndSet only means another thread shortened the path first
+    private static int find(AtomicIntegerArray parent, int p) {
+        int u = p;
+        while (true) {
+            int v = parent.get(u);
+            int w = parent.get(v);
+            if (v == w) return v;
+            parent.compareAndSet(u, v, w);
+            u = w;
+        }
+    }
+
+    // links the roots of p and q, retrying when a root was linked by another thread
+    private static void union(AtomicIntegerArray parent, int p, int q) {
+        while (true) {
+            int u = find(parent, p);
+            int v = find(parent, q);
+            if (u == v) return;
+            if (priority(u) > priority(v)) {
+                int swap = u;
+                u = v;
+                v = swap;
+            }
+            // u has the lower priority and goes under v, if it is still a root
+            if (parent.compareAndSet(u, u, v)) return;
+        }
+    }
+
+    // are p and q in the same set? false is only returned after finding
+    // that u was still a root after v was found, i.e. at a moment when
+    // the two were separate
+    private static boolean sameSet(AtomicIntegerArray parent, int p, int q) {
+        while (true) {
+            int u = find(parent, p);
+            int v = find(parent, q);
+            if (u == v) return true;
+            if (parent.get(u) == u) return false;
+        }
+    }
+
+    // test client: threads open random sites until the grid percolates
+    public static void main(String[] args) throws InterruptedException {
+        int n = Integer.parseInt(args[0]);
+        int nbThreads = Integer.parseInt(args[1]);
+        ConcurrentPercolation perc = new ConcurrentPercolation(n);
+        Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom rng = ThreadLocalRandom.current();
+                while (!perc.percolates()) {
+                    perc.open(rng.nextInt(n) + 1, rng.nextInt(n) + 1);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        StdOut.println(String.format("percolated after %d open sites (%.4f)",
+                                     perc.numberOfOpenSites(),
+                                     perc.numberOfOpenSites() / ((double) n * n)));
+    }
+}
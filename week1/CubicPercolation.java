@@ -0,0 +1,100 @@
+/* *****************************************************************************
+ *  Compilation:  javac CubicPercolation.java
+ *  Execution:    java CubicPercolation n trials seed [threads]
+ *
+ *  Site percolation on an n-by-n-by-n simple cubic lattice. The system
+ *  percolates when layer 1 (top) is connected to layer n (bottom).
+ *
+ *  Sites are stored layer by layer, row by row in one flat byte[] with a
+ *  shell of blocked sentinels, so (layer, row, col) maps to
+ *  (layer * (n + 2) + row) * (n + 2) + col and the six neighbours are the
+ *  offsets +-1, +-(n + 2) and +-(n + 2)^2. The site percolation threshold of
+ *  this lattice is about 0.3116.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+public class CubicPercolation extends AbstractLattice {
+
+    private final int gridSize;    // n
+    private final int width;       // n + 2, row length including the sentinels
+    private final int plane;       // (n + 2)^2, layer size including the sentinels
+
+    // creates n-by-n-by-n lattice, with all sites initially blocked
+    public CubicPercolation(int n) {
+        super(checkedPositions(n));
+        gridSize = n;
+        width = n + 2;
+        plane = width * width;
+    }
+
+    // (n + 2)^3 padded positions, which has to fit in an int
+    private static int checkedPositions(int n) {
+        if (n <= 0 || n > 1288) throw new IllegalArgumentException();
+        return (n + 2) * (n + 2) * (n + 2);
+    }
+
+    // opens the site (layer, row, col) if it is not open already, all in [1, n]
+    public void open(int layer, int row, int col) {
+        int p = index(layer, row, col);
+        if (isOpenAt(p)) return;
+
+        byte flags = OPEN;
+        if (layer == 1) flags |= TOP;
+        if (layer == gridSize) flags |= BOTTOM;
+        makeSet(p, flags);
+        countOpen();
+
+        if (isOpenAt(p - plane)) union(p, p - plane);
+        if (isOpenAt(p + plane)) union(p, p + plane);
+        if (isOpenAt(p - width)) union(p, p - width);
+        if (isOpenAt(p + width)) union(p, p + width);
+        if (isOpenAt(p - 1)) union(p, p - 1);
+        if (isOpenAt(p + 1)) union(p, p + 1);
+    }
+
+    // is the site (layer, row, col) open?
+    public boolean isOpen(int layer, int row, int col) {
+        return isOpenAt(index(layer, row, col));
+    }
+
+    // is the site (layer, row, col) connected to the top layer?
+    public boolean isFull(int layer, int row, int col) {
+        int p = index(layer, row, col);
+        return isOpenAt(p) && isTopConnected(p);
+    }
+
+    // sites are the elements, numbered layer by layer, row by row from 0
+    public int elements() {
+        return gridSize * gridSize * gridSize;
+    }
+
+    public void openElement(int i) {
+        int col = i % gridSize;
+        int row = (i / gridSize) % gridSize;
+        int layer = i / (gridSize * gridSize);
+        open(layer + 1, row + 1, col + 1);
+    }
+
+    private int index(int layer, int row, int col) {
+        if (layer <= 0 || layer > gridSize || row <= 0 || row > gridSize
+                || col <= 0 || col > gridSize) {
+            throw new IllegalArgumentException();
+        }
+        return layer * plane + row * width + col;
+    }
+
+    // test client: threshold estimate through the PercolationStats driver
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        long seed = Long.parseLong(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                                      : Runtime.getRuntime().availableProcessors();
+        PercolationStats stats = new PercolationStats(() -> new CubicPercolation(n),
+                                                      trials, seed, threads,
+                                                      PercolationStats.Sampling.PERMUTATION);
+        StdOut.println(String.format("mean\t = %f", stats.mean()));
+        StdOut.println(String.format("stddev\t = %f", stats.stddev()));
+    }
+}
@@ -0,0 +1,107 @@
+/* *****************************************************************************
+ *  Compilation:  javac FastPercolation.java
+ *  Execution:    java FastPercolation n
+ *
+ *  Percolation engine with the same API as Percolation, tuned for trials:
+ *  - the n-by-n grid is stored row by row in one flat byte[] with a ring of
+ *    blocked sentinel sites around it, so (row, col) maps to row * (n + 2) + col
+ *    and the four neighbours of an open site are read without range checks;
+ *  - union-find is built in (AbstractLattice): union by rank and find with
+ *    path halving, indexed by the same padded positions as the grid;
+ *  - every root carries TOP / BOTTOM flags telling whether its component
+ *    touches row 1 / row n. isFull() is one find() with no backwash and
+ *    percolates() is a field read.
+ *
+ *  A site's union-find entry is initialised when it is opened, so reset()
+ *  only has to clear the byte grid.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class FastPercolation extends AbstractLattice {
+
+    private final int gridSize;    // n
+    private final int width;       // n + 2, row length including the sentinels
+
+    // creates n-by-n grid, with all sites initially blocked
+    public FastPercolation(int n) {
+        super(checkedPositions(n));
+        gridSize = n;
+        width = n + 2;
+    }
+
+    // (n + 2)^2 padded positions, which has to fit in an int
+    private static int checkedPositions(int n) {
+        if (n <= 0 || n > 46338) throw new IllegalArgumentException();
+        return (n + 2) * (n + 2);
+    }
+
+    // opens the site (row, col) if it is not open already
+    // by convention row and col are integers from 1 to n where (1, 1) is upper left site
+    public void open(int row, int col) {
+        int p = index(row, col);
+        if (isOpenAt(p)) return;
+
+        byte flags = OPEN;
+        if (row == 1) flags |= TOP;
+        if (row == gridSize) flags |= BOTTOM;
+        makeSet(p, flags);
+        countOpen();
+
+        // sentinels are never open, so no range checks are needed
+        if (isOpenAt(p - width)) union(p, p - width);
+        if (isOpenAt(p + width)) union(p, p + width);
+        if (isOpenAt(p - 1)) union(p, p - 1);
+        if (isOpenAt(p + 1)) union(p, p + 1);
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        return isOpenAt(index(row, col));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        int p = index(row, col);
+        return isOpenAt(p) && isTopConnected(p);
+    }
+
+    // returns the number of open sites
+    public int numberOfOpenSites() {
+        return numberOfOpenElements();
+    }
+
+    // sites are the elements, numbered row by row from 0
+    public int elements() {
+        return gridSize * gridSize;
+    }
+
+    public void openElement(int i) {
+        open(i / gridSize + 1, i % gridSize + 1);
+    }
+
+    // padded position of (row, col), validating the range once
+    private int index(int row, int col) {
+        if (row <= 0 || row > gridSize || col <= 0 || col > gridSize) {
+            throw new IllegalArgumentException();
+        }
+        return row * width + col;
+    }
+
+    // test client: compares the results with Percolation on random openings
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        FastPercolation fast = new FastPercolation(n);
+        Percolation reference = new Percolation(n);
+        while (!reference.percolates()) {
+            int row = StdRandom.uniform(n) + 1;
+            int col = StdRandom.uniform(n) + 1;
+            fast.open(row, col);
+            reference.open(row, col);
+            assert fast.percolates() == reference.percolates() : "percolates() differs";
+        }
+        assert fast.numberOfOpenSites() == reference.numberOfOpenSites() : "Open count differs";
+        StdOut.println(String.format("percolated after %d open sites", fast.numberOfOpenSites()));
+    }
+}
@@ -0,0 +1,243 @@
+/* *****************************************************************************
+ *  Compilation:  javac LargePercolation.java
+ *  Execution:    java LargePercolation n [file]
+ *
+ *  Percolation on grids whose n*n sites do not fit in an int (n > 46340),
+ *  up to 2^40 - 1 sites (n <= 1048575), the range of a 40-bit parent.
+ *  Sites are addressed with long indices and the storage is kept compact:
+ *  - open state: 1 bit per site in a bitset on the heap, split like the
+ *    union-find into blocks of 2^24 bits (2^18 longs), so that no array
+ *    needs more than an int index;
+ *  - union-find: one 6-byte entry per site, outside the heap, split into
+ *    chunks of 2^24 entries. Every chunk is a direct ByteBuffer or, when a
+ *    file is given, a region of that memory-mapped file. The entry packs
+ *    parent (40 bits), rank (6 bits) and the TOP / BOTTOM flags (2 bits).
+ *
+ *  That is about 6.1 bytes per site instead of the 9+ bytes of Percolation,
+ *  e.g. 61 GB for a 100k-by-100k grid, which a memory-mapped file can hold
+ *  on one node. Direct buffers are bounded by -XX:MaxDirectMemorySize.
+ *
+ *  An entry is only written when its site is opened, so a mapped file stays
+ *  sparse and nothing has to be initialised up front.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class LargePercolation implements AutoCloseable {
+
+    private static final int ENTRY_BYTES = 6;
+    private static final int CHUNK_SHIFT = 24;                 // 2^24 entries per chunk
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private static final long PARENT_MASK = (1L << 40) - 1;    // bits 0..39
+    private static final int RANK_SHIFT = 40;                  // bits 40..45
+    private static final long RANK_MASK = 0x3FL;
+    private static final long TOP = 1L << 46;
+    private static final long BOTTOM = 1L << 47;
+
+    private final int gridSize;
+    private final long maxId;           // n * n
+    private final long[][] openBits;    // bit i set <=> site i is open, by chunk
+    private final ByteBuffer[] chunks;  // union-find entries
+    private final FileChannel channel;  // backing file, null for direct buffers
+    private long nbOpenSites;
+    private boolean percolates;
+
+    // creates n-by-n grid, with all sites initially blocked,
+    // union-find kept in direct (off-heap) buffers
+    public LargePercolation(int n) {
+        this(n, null);
+    }
+
+    // creates n-by-n grid, with all sites initially blocked,
+    // union-find kept in the memory-mapped file (created if needed)
+    public LargePercolation(int n, Path file) {
+        if (n <= 0) throw new IllegalArgumentException();
+        gridSize = n;
+        maxId = (long) n * n;
+        if (maxId > PARENT_MASK) {
+            throw new IllegalArgumentException("Grid too large: n*n must be below 2^40");
+        }
+
+        int nbChunks = (int) ((maxId + CHUNK_MASK) >>> CHUNK_SHIFT);
+        openBits = new long[nbChunks][];
+        chunks = new ByteBuffer[nbChunks];
+        try {
+            if (file == null) {
+                channel = null;
+            }
+            else {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                           StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            for (int c = 0; c < nbChunks; c++) {
+                long first = (long) c << CHUNK_SHIFT;
+                int entries = (int) Math.min(1L << CHUNK_SHIFT, maxId - first);
+                openBits[c] = new long[(entries + 63) >>> 6];
+                int bytes = entries * ENTRY_BYTES;
+                ByteBuffer chunk;
+                if (channel == null) chunk = ByteBuffer.allocateDirect(bytes);
+                else chunk = channel.map(FileChannel.MapMode.READ_WRITE, first * ENTRY_BYTES, bytes);
+                chunks[c] = chunk.order(ByteOrder.nativeOrder());
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nbOpenSites = 0;
+        percolates = false;
+    }
+
+    // blocks all sites again, the union-find entries are rewritten on open
+    public void reset() {
+        for (long[] bits : openBits) {
+            Arrays.fill(bits, 0L);
+        }
+        nbOpenSites = 0;
+        percolates = false;
+    }
+
+    // opens the site (row, col) if it is not open already
+    // by convention row and col are integers from 1 to n where (1, 1) is upper left site
+    public void open(int row, int col) {
+        long p = index(row, col);
+        if (isOpen(p)) return;
+        openBits[(int) (p >>> CHUNK_SHIFT)][(int) (p & CHUNK_MASK) >>> 6] |= 1L << p;
+        nbOpenSites++;
+
+        long flags = 0;
+        if (row == 1) flags |= TOP;
+        if (row == gridSize) flags |= BOTTOM;
+        write(p, p | flags);
+        if (flags == (TOP | BOTTOM)) percolates = true;  // 1-by-1 grid
+
+        if (row > 1 && isOpen(p - gridSize)) union(p, p - gridSize);
+        if (row < gridSize && isOpen(p + gridSize)) union(p, p + gridSize);
+        if (col > 1 && isOpen(p - 1)) union(p, p - 1);
+        if (col < gridSize && isOpen(p + 1)) union(p, p + 1);
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        return isOpen(index(row, col));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        long p = index(row, col);
+        return isOpen(p) && (read(find(p)) & TOP) != 0;
+    }
+
+    // returns the number of open sites
+    public long numberOfOpenSites() {
+        return nbOpenSites;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // releases the backing file, if any
+    public void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long index(int row, int col) {
+        if (row <= 0 || row > gridSize || col <= 0 || col > gridSize) {
+            throw new IllegalArgumentException();
+        }
+        return (long) (row - 1) * gridSize + col - 1;
+    }
+
+    private boolean isOpen(long p) {
+        long word = openBits[(int) (p >>> CHUNK_SHIFT)][(int) (p & CHUNK_MASK) >>> 6];
+        return (word & (1L << p)) != 0;
+    }
+
+    // the 48-bit entry of site p
+    private long read(long p) {
+        ByteBuffer chunk = chunks[(int) (p >>> CHUNK_SHIFT)];
+        int offset = (int) (p & CHUNK_MASK) * ENTRY_BYTES;
+        long low = chunk.getInt(offset) & 0xFFFFFFFFL;
+        long high = chunk.getShort(offset + 4) & 0xFFFFL;
+        return low | high << 32;
+    }
+
+    private void write(long p, long entry) {
+        ByteBuffer chunk = chunks[(int) (p >>> CHUNK_SHIFT)];
+        int offset = (int) (p & CHUNK_MASK) * ENTRY_BYTES;
+        chunk.putInt(offset, (int) entry);
+        chunk.putShort(offset + 4, (short) (entry >>> 32));
+    }
+
+    // root of the tree containing p, halving the path on the way up.
+    // Rank and flags only matter on roots, so a non-root entry is just its parent
+    private long find(long p) {
+        long parent = read(p) & PARENT_MASK;
+        while (parent != p) {
+            long grandParent = read(parent) & PARENT_MASK;
+            write(p, grandParent);
+            p = grandParent;
+            parent = read(p) & PARENT_MASK;
+        }
+        return p;
+    }
+
+    // union by rank, the new root inherits the TOP / BOTTOM flags of both trees
+    private void union(long p, long q) {
+        long rootP = find(p);
+        long rootQ = find(q);
+        if (rootP == rootQ) return;
+
+        long entryP = read(rootP);
+        long entryQ = read(rootQ);
+        long rankP = (entryP >>> RANK_SHIFT) & RANK_MASK;
+        long rankQ = (entryQ >>> RANK_SHIFT) & RANK_MASK;
+        long flags = (entryP | entryQ) & (TOP | BOTTOM);
+        if (rankP < rankQ) {
+            write(rootP, rootQ);
+            write(rootQ, rootQ | rankQ << RANK_SHIFT | flags);
+        }
+        else {
+            if (rankP == rankQ) rankP++;
+            write(rootQ, rootP);
+            write(rootP, rootP | rankP << RANK_SHIFT | flags);
+        }
+        if (flags == (TOP | BOTTOM)) percolates = true;
+    }
+
+    // test client: one trial on an n-by-n grid, optionally backed by a file
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        Path file = args.length > 1 ? Paths.get(args[1]) : null;
+        SplittableRandom rng = new SplittableRandom();
+        Stopwatch timer = new Stopwatch();
+        try (LargePercolation perc = new LargePercolation(n, file)) {
+            while (!perc.percolates()) {
+                perc.open(rng.nextInt(n) + 1, rng.nextInt(n) + 1);
+            }
+            StdOut.printf("threshold = %f after %d open sites (%.1f s)\n",
+                          perc.numberOfOpenSites() / ((double) n * n),
+                          perc.numberOfOpenSites(), timer.elapsedTime());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+/* *****************************************************************************
+ *  Compilation:  javac Lattice.java
+ *
+ *  A percolation system as seen by the PercolationStats trial driver:
+ *  a fixed number of elements (sites in site percolation, bonds in bond
+ *  percolation), numbered from 0, that are opened one at a time until the
+ *  system percolates.
+ **************************************************************************** */
+
+public interface Lattice {
+
+    // number of elements that can be opened
+    int elements();
+
+    // opens element i (0 <= i < elements()) if it is not open already
+    void openElement(int i);
+
+    // returns the number of open elements
+    int numberOfOpenElements();
+
+    // does the system percolate?
+    boolean percolates();
+
+    // blocks all elements again
+    void reset();
+}
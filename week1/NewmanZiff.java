@@ -0,0 +1,246 @@
+/* *****************************************************************************
+ *  Compilation:  javac NewmanZiff.java
+ *  Execution:    java NewmanZiff n trials seed
+ *
+ *  Newman-Ziff percolation on an n-by-n grid. Every trial opens all n*n
+ *  sites in a random order and, after each open, records whether the grid
+ *  percolates, the size of the largest cluster and the mean cluster size.
+ *  A single sweep therefore yields the whole curve over the number of open
+ *  sites k = 0..n*n, as well as the threshold sample (the k at which the top
+ *  and bottom first connect).
+ *
+ *  Percolation is detected in union() through TOP / BOTTOM flags on the
+ *  roots, so no find() is spent checking percolates() after every open.
+ *  Quantities at an occupation probability p are obtained by convolving the
+ *  curves with the binomial distribution of k:
+ *  Q(p) = sum_k C(N, k) p^k (1 - p)^(N - k) Q(k).
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class NewmanZiff {
+
+    // bits of state[]
+    private static final byte OPEN = 1;
+    private static final byte TOP = 2;      // meaningful on roots only
+    private static final byte BOTTOM = 4;   // meaningful on roots only
+
+    private final int gridSize;
+    private final int nbSites;
+    private final int nbTrials;
+
+    // sums over trials, indexed by the number of open sites k
+    private final double[] spanning;       // number of trials percolating at k
+    private final double[] largest;        // size of the largest cluster
+    private final double[] meanSize;       // sum of squared cluster sizes / k
+
+    // running moments (Welford) of the threshold samples
+    private double thresholdMean;
+    private double thresholdM2;
+
+    // the sweep's working state, reused by every trial
+    private final int width;               // n + 2, row length with the sentinel ring
+    private final int[] offsets;           // up, down, left, right in padded positions
+    private final byte[] state;
+    private final int[] parent;
+    private final int[] size;
+    private final int[] order;
+
+    // runs the given number of sweeps on an n-by-n grid
+    public NewmanZiff(int n, int trials, long seed) {
+        if (n <= 0 || n > 46338) throw new IllegalArgumentException();
+        if (trials <= 0) throw new IllegalArgumentException();
+        gridSize = n;
+        nbSites = n * n;
+        nbTrials = trials;
+        spanning = new double[nbSites + 1];
+        largest = new double[nbSites + 1];
+        meanSize = new double[nbSites + 1];
+
+        width = n + 2;
+        offsets = new int[] { -width, width, -1, 1 };
+        state = new byte[width * width];
+        parent = new int[width * width];
+        size = new int[width * width];
+        order = new int[nbSites];
+        for (int i = 0; i < nbSites; i++) {
+            order[i] = i;
+        }
+
+        SplittableRandom rng = new SplittableRandom(seed);
+        for (int t = 1; t <= trials; t++) {
+            int firstSpanning = sweep(rng);
+            double threshold = firstSpanning / (double) nbSites;
+            double delta = threshold - thresholdMean;
+            thresholdMean += delta / t;
+            thresholdM2 += delta * (threshold - thresholdMean);
+        }
+    }
+
+    // opens every site in random order, adds the observables of each k to the
+    // sums and returns the k at which the grid first percolates
+    private int sweep(SplittableRandom rng) {
+        Arrays.fill(state, (byte) 0);
+        int firstSpanning = -1;
+        int maxCluster = 0;
+        long sumSquares = 0;    // sum over clusters of size^2
+
+        for (int k = 1; k <= nbSites; k++) {
+            // lazy Fisher-Yates, see PercolationStats
+            int j = k - 1 + rng.nextInt(nbSites - k + 1);
+            int site = order[j];
+            order[j] = order[k - 1];
+            order[k - 1] = site;
+
+            int row = site / gridSize + 1;
+            int p = row * width + site % gridSize + 1;
+            byte flags = OPEN;
+            if (row == 1) flags |= TOP;
+            if (row == gridSize) flags |= BOTTOM;
+            state[p] = flags;
+            parent[p] = p;
+            size[p] = 1;
+            sumSquares += 1;
+            boolean spans = flags == (OPEN | TOP | BOTTOM);
+
+            for (int offset : offsets) {
+                int q = p + offset;
+                if ((state[q] & OPEN) == 0) continue;
+                int rootP = find(p);
+                int rootQ = find(q);
+                if (rootP == rootQ) continue;
+                sumSquares += 2L * size[rootP] * size[rootQ];
+                int root = union(rootP, rootQ);
+                if ((state[root] & (TOP | BOTTOM)) == (TOP | BOTTOM)) spans = true;
+            }
+            maxCluster = Math.max(maxCluster, size[find(p)]);
+
+            if (spans && firstSpanning < 0) firstSpanning = k;
+            if (firstSpanning > 0) spanning[k] += 1;
+            largest[k] += maxCluster;
+            meanSize[k] += sumSquares / (double) k;
+        }
+        return firstSpanning;
+    }
+
+    // root of the tree containing p, halving the path on the way up
+    private int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    // links two distinct roots by size, returns the new root
+    private int union(int rootP, int rootQ) {
+        if (size[rootP] < size[rootQ]) {
+            int swap = rootP;
+            rootP = rootQ;
+            rootQ = swap;
+        }
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        state[rootP] |= state[rootQ];
+        return rootP;
+    }
+
+    // number of sites of the grid
+    public int sites() {
+        return nbSites;
+    }
+
+    // sample mean of percolation threshold
+    public double mean() {
+        return thresholdMean;
+    }
+
+    // sample standard deviation of percolation threshold
+    public double stddev() {
+        return Math.sqrt(thresholdM2 / (nbTrials - 1));
+    }
+
+    // probability that the grid percolates with k open sites
+    public double spanningProbabilityAt(int k) {
+        validate(k);
+        return spanning[k] / nbTrials;
+    }
+
+    // mean size of the largest cluster with k open sites, as a fraction of all sites
+    public double largestClusterFractionAt(int k) {
+        validate(k);
+        return largest[k] / nbTrials / nbSites;
+    }
+
+    // mean size of the cluster of a random open site, with k open sites
+    public double meanClusterSizeAt(int k) {
+        validate(k);
+        return meanSize[k] / nbTrials;
+    }
+
+    // probability that the grid percolates when each site is open with probability p
+    public double spanningProbability(double p) {
+        return convolve(spanning, p) / nbTrials;
+    }
+
+    // mean largest cluster fraction when each site is open with probability p
+    public double largestClusterFraction(double p) {
+        return convolve(largest, p) / nbTrials / nbSites;
+    }
+
+    // mean cluster size when each site is open with probability p
+    public double meanClusterSize(double p) {
+        return convolve(meanSize, p) / nbTrials;
+    }
+
+    private void validate(int k) {
+        if (k < 0 || k > nbSites) throw new IllegalArgumentException();
+    }
+
+    // sum_k B(N, k, p) curve[k]. The binomial weights are built outwards from
+    // the mode with the ratio B(k + 1) / B(k) = (N - k) / (k + 1) * p / (1 - p),
+    // stopping once they are negligible, and normalised by their sum
+    private double convolve(double[] curve, double p) {
+        if (!(p >= 0 && p <= 1)) throw new IllegalArgumentException();
+        if (p == 0) return curve[0];
+        if (p == 1) return curve[nbSites];
+
+        double odds = p / (1 - p);
+        int mode = (int) Math.min(nbSites, Math.floor((nbSites + 1) * p));
+        double total = 1;
+        double sum = curve[mode];
+
+        double weight = 1;
+        for (int k = mode; k < nbSites && weight > 1e-16; k++) {
+            weight *= (double) (nbSites - k) / (k + 1) * odds;
+            total += weight;
+            sum += weight * curve[k + 1];
+        }
+        weight = 1;
+        for (int k = mode; k > 0 && weight > 1e-16; k--) {
+            weight *= k / ((double) (nbSites - k + 1) * odds);
+            total += weight;
+            sum += weight * curve[k - 1];
+        }
+        return sum / total;
+    }
+
+    // test client: threshold estimate and the curves around p = 0.593
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        long seed = Long.parseLong(args[2]);
+        NewmanZiff nz = new NewmanZiff(n, trials, seed);
+        StdOut.println(String.format("mean\t = %f", nz.mean()));
+        StdOut.println(String.format("stddev\t = %f", nz.stddev()));
+        StdOut.println("p\tR(p)\tP(p)\tS(p)");
+        for (int i = 50; i <= 70; i++) {
+            double p = i / 100.0;
+            StdOut.println(String.format("%.2f\t%.4f\t%.4f\t%.2f", p, nz.spanningProbability(p),
+                                         nz.largestClusterFraction(p), nz.meanClusterSize(p)));
+        }
+    }
+}
@@ -4,16 +4,24 @@
  *  Last modified:     13/06/2020
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.util.Arrays;
 
-public class Percolation {
+public class Percolation implements Lattice {
+
+    // per-root flags: does the component touch row 1 (virtual top) / row n (virtual bottom)?
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
 
     private final int gridSize;
-    // Declaration: WeightedQuickUnionUF associates a variable name with an object type.
-    // Note that UF object is indexed starting from 0
-    private final WeightedQuickUnionUF ufObject;
-    private boolean[][] conductMap;
+    // Weighted quick-union kept inline (instead of algs4 WeightedQuickUnionUF)
+    // so that reset() can clear it in place. Note that it is indexed starting from 0.
+    // Entries of a site are initialised when the site is opened, closed sites are never read
+    private final int[] parent;   // parent[i] = parent of i
+    private final int[] size;     // size[i] = number of sites in tree rooted at i
+    private final byte[] status;  // status[i] = TOP / BOTTOM flags of the tree rooted at i
+    private final boolean[][] conductMap;
     private int nbOpenSites;
+    private boolean percolates;
 
     // creates n-by-n grid, with all sites initially blocked
     public Percolation(int n) {
@@ -27,17 +35,22 @@ public class Percolation {
         gridSize = n;
         conductMap = new boolean[n][n];
         nbOpenSites = 0;
+        percolates = false;
 
         int maxId = n * n;
-        ufObject = new WeightedQuickUnionUF(maxId);
-        for (int ui = 1; ui <= n - 1; ui++) {
-            ufObject.union(0, ui);
-            // System.out.println(ufObject.count());
-            // Put maxId - 1 because the indexing of ufObject starts from 0
-            // thus its from 0 to n^2-1 but NOT from 1 to n^2
-            ufObject.union(maxId - 1, maxId - 1 - ui);
-            // System.out.println(ufObject.count());
+        parent = new int[maxId];
+        size = new int[maxId];
+        status = new byte[maxId];
+    }
+
+    // blocks all sites again without reallocating the grid,
+    // so that one object can be reused for many trials
+    public void reset() {
+        for (boolean[] row : conductMap) {
+            Arrays.fill(row, false);
         }
+        nbOpenSites = 0;
+        percolates = false;
     }
 
     // opens the site (row, col) if it is not open already
@@ -49,6 +62,18 @@ public class Percolation {
         if (!isOpen(row, col)) {
             conductMap[row - 1][col - 1] = true;
             nbOpenSites = ++nbOpenSites;
+
+            // the new site is a tree of its own, connected to the virtual
+            // top / bottom if it lies in the first / last row
+            int idx = xyTo1D(row, col);
+            parent[idx] = idx;
+            size[idx] = 1;
+            byte flags = 0;
+            if (row == 1) flags |= TOP;
+            if (row == gridSize) flags |= BOTTOM;
+            status[idx] = flags;
+            if (flags == (TOP | BOTTOM)) percolates = true;  // 1-by-1 grid
+
             connectToNeighbours(row, col);
         }
     }
@@ -62,16 +87,13 @@ public class Percolation {
     }
 
     // is the site (row, col) full?
+    // only the component's own TOP flag is consulted, so there is no backwash
+    // through the bottom row
     public boolean isFull(int row, int col) {
         if (!isValidRange(row, col)) {
             throw new IllegalArgumentException();
         }
-        boolean flagFull;
-        if (row > 1 && row < gridSize)
-            flagFull = ufObject.find(xyTo1D(row, col)) == ufObject.find(0);
-        else if (row == 1) flagFull = isOpen(row, col);
-        else flagFull = isOpen(row, col) && ufObject.find(xyTo1D(row, col)) == ufObject.find(0);
-        return flagFull;
+        return isOpen(row, col) && (status[find(xyTo1D(row, col))] & TOP) != 0;
     }
 
     // returns the number of open sites
@@ -79,14 +101,57 @@ public class Percolation {
         return nbOpenSites;
     }
 
+    // Lattice view for the PercolationStats driver: the elements are the sites,
+    // numbered row by row from 0
+    public int elements() {
+        return gridSize * gridSize;
+    }
+
+    public void openElement(int i) {
+        open(i / gridSize + 1, i % gridSize + 1);
+    }
+
+    public int numberOfOpenElements() {
+        return nbOpenSites;
+    }
+
     // does the system percolate?
+    // set by union() as soon as one component touches both the top and the bottom
     public boolean percolates() {
-        if (gridSize > 1) return ufObject.find(gridSize * gridSize - 1) == ufObject.find(0);
-        else return isOpen(1, 1);
+        return percolates;
+    }
+
+    // root of the tree containing site p
+    private int find(int p) {
+        while (p != parent[p]) {
+            p = parent[p];
+        }
+        return p;
+    }
+
+    // merges the trees containing p and q, smaller tree goes under the larger one,
+    // the new root inherits the TOP / BOTTOM flags of both
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return;
+        int root;
+        if (size[rootP] < size[rootQ]) {
+            parent[rootP] = rootQ;
+            size[rootQ] += size[rootP];
+            root = rootQ;
+        }
+        else {
+            parent[rootQ] = rootP;
+            size[rootP] += size[rootQ];
+            root = rootP;
+        }
+        status[root] = (byte) (status[rootP] | status[rootQ]);
+        if (status[root] == (TOP | BOTTOM)) percolates = true;
     }
 
     // transforms (row,col) of [n x n] grid to 1D indices from 0 to Math.pow(n, 2)-1
-    // this is needed because UF object is 1D
+    // this is needed because union-find is 1D
     private int xyTo1D(int row, int col) {
         int idx = gridSize * (row - 1) + col - 1;
         return idx;
@@ -106,22 +171,22 @@ public class Percolation {
     private void connectToNeighbours(int row, int col) {
         if (isValidRange(row - 1, col)) {
             if (isOpen(row - 1, col)) {
-                ufObject.union(xyTo1D(row, col), xyTo1D(row - 1, col));
+                union(xyTo1D(row, col), xyTo1D(row - 1, col));
             }
         }
         if (isValidRange(row + 1, col)) {
             if (isOpen(row + 1, col)) {
-                ufObject.union(xyTo1D(row, col), xyTo1D(row + 1, col));
+                union(xyTo1D(row, col), xyTo1D(row + 1, col));
             }
         }
         if (isValidRange(row, col - 1)) {
             if (isOpen(row, col - 1)) {
-                ufObject.union(xyTo1D(row, col), xyTo1D(row, col - 1));
+                union(xyTo1D(row, col), xyTo1D(row, col - 1));
             }
         }
         if (isValidRange(row, col + 1)) {
             if (isOpen(row, col + 1)) {
-                ufObject.union(xyTo1D(row, col), xyTo1D(row, col + 1));
+                union(xyTo1D(row, col), xyTo1D(row, col + 1));
             }
         }
     }
@@ -139,7 +204,7 @@ public class Percolation {
         System.out.println(objPrc.isFull(2, 3));
         objPrc.open(1, 3);
         System.out.println(Arrays.deepToString(objPrc.conductMap));
-        System.out.println(objPrc.ufObject.find(n * n - 1));
+        System.out.println(objPrc.find(n * n - 1));
         System.out.println(objPrc.percolates());
         objPrc.open(3, 3);
         System.out.println(objPrc.percolates());*/
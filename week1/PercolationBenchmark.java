@@ -0,0 +1,215 @@
+/* *****************************************************************************
+ *  Compilation:  javac PercolationBenchmark.java
+ *  Execution:    java PercolationBenchmark n trials [maxThreads]
+ *
+ *  Micro-benchmarks for the percolation data types. Every scenario runs the
+ *  same seeded sequence of trials on the current thread and reports wall time
+ *  and the bytes allocated by that thread (HotSpot ThreadMXBean extension).
+ *
+ *  Scenarios:
+ *  fresh - new Percolation(n) for every trial
+ *  reset - one Percolation reused through reset()
+ *  permuted - one Percolation reused, sites opened from a lazily shuffled permutation
+ *  fast - one FastPercolation reused, same draws as reset
+ *
+ *  With maxThreads, ConcurrentPercolation is also measured: 1, 2, 4, ...
+ *  maxThreads threads open all n*n sites of one shared grid, in a seeded
+ *  random order split evenly between them, and the open rate is reported.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+
+public class PercolationBenchmark {
+
+    private static final long SEED = 20200613L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // one trial on the grid perc, returns the number of open sites at percolation
+    private static int trial(Percolation perc, int n, SplittableRandom rng) {
+        while (!perc.percolates()) {
+            perc.open(rng.nextInt(n) + 1, rng.nextInt(n) + 1);
+        }
+        return perc.numberOfOpenSites();
+    }
+
+    private static int trial(FastPercolation perc, int n, SplittableRandom rng) {
+        while (!perc.percolates()) {
+            perc.open(rng.nextInt(n) + 1, rng.nextInt(n) + 1);
+        }
+        return perc.numberOfOpenSites();
+    }
+
+    private static long fresh(int n, int trials) {
+        SplittableRandom rng = new SplittableRandom(SEED);
+        long opened = 0;
+        for (int t = 0; t < trials; t++) {
+            opened += trial(new Percolation(n), n, rng);
+        }
+        return opened;
+    }
+
+    private static long reset(int n, int trials) {
+        SplittableRandom rng = new SplittableRandom(SEED);
+        Percolation perc = new Percolation(n);
+        long opened = 0;
+        for (int t = 0; t < trials; t++) {
+            perc.reset();
+            opened += trial(perc, n, rng);
+        }
+        return opened;
+    }
+
+    private static long permuted(int n, int trials) {
+        SplittableRandom rng = new SplittableRandom(SEED);
+        Percolation perc = new Percolation(n);
+        int total = n * n;
+        int[] order = new int[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        long opened = 0;
+        for (int t = 0; t < trials; t++) {
+            perc.reset();
+            for (int i = 0; !perc.percolates(); i++) {
+                int j = i + rng.nextInt(total - i);
+                int site = order[j];
+                order[j] = order[i];
+                order[i] = site;
+                perc.open(site / n + 1, site % n + 1);
+            }
+            opened += perc.numberOfOpenSites();
+        }
+        return opened;
+    }
+
+    private static long fast(int n, int trials) {
+        SplittableRandom rng = new SplittableRandom(SEED);
+        FastPercolation perc = new FastPercolation(n);
+        long opened = 0;
+        for (int t = 0; t < trials; t++) {
+            perc.reset();
+            opened += trial(perc, n, rng);
+        }
+        return opened;
+    }
+
+    // prints one line of results: name, time, allocation and allocation rate
+    private static void report(String name, double seconds, long bytes, long opened) {
+        double mb = bytes / (1024.0 * 1024.0);
+        StdOut.printf("%-8s %9.3f s %12.1f MB %10.1f MB/s  (%d sites opened)\n",
+                      name, seconds, mb, mb / Math.max(seconds, 1e-9), opened);
+    }
+
+    private static void run(String name, int n, int trials) {
+        long tid = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(tid);
+        Stopwatch timer = new Stopwatch();
+        long opened;
+        switch (name) {
+            case "fresh":
+                opened = fresh(n, trials);
+                break;
+            case "reset":
+                opened = reset(n, trials);
+                break;
+            case "permuted":
+                opened = permuted(n, trials);
+                break;
+            case "fast":
+                opened = fast(n, trials);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + name);
+        }
+        double seconds = timer.elapsedTime();
+        long bytes = THREADS.getThreadAllocatedBytes(tid) - before;
+        report(name, seconds, bytes, opened);
+    }
+
+    // threads open every site of one shared ConcurrentPercolation,
+    // returns the elapsed wall time in seconds
+    private static double concurrent(int n, int nbThreads, int[] order)
+            throws InterruptedException {
+        ConcurrentPercolation perc = new ConcurrentPercolation(n);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            int lo = (int) ((long) order.length * t / nbThreads);
+            int hi = (int) ((long) order.length * (t + 1) / nbThreads);
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = lo; i < hi; i++) {
+                    perc.open(order[i] / n + 1, order[i] % n + 1);
+                    perc.percolates();
+                }
+            });
+            threads[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        if (!perc.percolates() || perc.numberOfOpenSites() != order.length) {
+            throw new IllegalStateException("Not all sites were opened");
+        }
+        return seconds;
+    }
+
+    // opens/s of ConcurrentPercolation for 1, 2, 4, ... maxThreads threads
+    private static void scaling(int n, int maxThreads) throws InterruptedException {
+        int[] order = new int[n * n];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        SplittableRandom rng = new SplittableRandom(SEED);
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        concurrent(n, maxThreads, order);    // warm-up
+        for (int t = 1; t <= maxThreads; t = t < maxThreads ? Math.min(2 * t, maxThreads) : t + 1) {
+            double seconds = concurrent(n, t, order);
+            StdOut.printf("threads %3d %9.3f s %12.0f opens/s\n", t, seconds,
+                          order.length / seconds);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        // Input
+        // n - grid size
+        // trials - the number of trials per scenario
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        String[] scenarios = { "fresh", "reset", "permuted", "fast" };
+
+        // warm-up so that all scenarios run compiled code
+        for (String name : scenarios) {
+            run(name, n, Math.max(1, trials / 10));
+        }
+        StdOut.println("----");
+        for (String name : scenarios) {
+            run(name, n, trials);
+        }
+
+        if (args.length > 2) {
+            StdOut.println("----");
+            scaling(n, Integer.parseInt(args[2]));
+        }
+    }
+}
@@ -2,42 +2,338 @@
  *  Name:              Alan Turing
  *  Coursera User ID:  123456
  *  Last modified:     1/1/2019
+ *
+ *  Compilation:  javac PercolationStats.java
+ *  Execution:    java PercolationStats n trials [seed [threads [sampling]]]
+ *                java PercolationStats n trials seed threads checkpointFile interval
+ *                java PercolationStats n precision maxTrials seed [threads [sampling]]
  **************************************************************************** */
 
 import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 public class PercolationStats {
 
-    private final double[] rawResults;
+    // how a trial picks the next element (site or bond) to open
+    // UNIFORM - draw an element uniformly, already open elements are drawn again
+    // PERMUTATION - walk a random permutation of the elements, every draw opens one
+    public enum Sampling { UNIFORM, PERMUTATION }
+
+    // called after every trial of an adaptive run
+    public interface ProgressListener {
+        void trialCompleted(int trials, double mean, double halfWidth);
+    }
+
+    // an adaptive run never stops before this many trials,
+    // below it the normal approximation behind the 95% interval is poor
+    private static final int MIN_TRIALS = 30;
+
+    // trials per thread in each round of an adaptive run
+    private static final int ROUND_TRIALS = 8;
+
+    // running moments of the thresholds (Welford), updated once per trial
+    private int count;
+    private double runningMean;
+    private double m2;            // sum of squared deviations from runningMean
 
     // perform independent trials on an n-by-n grid
     public PercolationStats(int n, int trials) {
         if (n <= 0) throw new IllegalArgumentException();
         if (trials <= 0) throw new IllegalArgumentException();
 
-        rawResults = new double[trials];
         double totalNbSites = n * n;
+        Percolation perc = new Percolation(n);
         for (int itr = 1; itr <= trials; itr++) {
-            Percolation perc = new Percolation(n);
+            perc.reset();
             while (!perc.percolates()) {
                 // +1 since row and col are within [1, n]
                 int openRow = StdRandom.uniform(n) + 1;
                 int openCol = StdRandom.uniform(n) + 1;
                 perc.open(openRow, openCol);
             }
-            rawResults[itr - 1] = perc.numberOfOpenSites() / totalNbSites;
+            record(perc.numberOfOpenSites() / totalNbSites);
+        }
+    }
+
+    // perform independent trials on an n-by-n grid using a pool of worker threads
+    // each worker runs a contiguous block of trials with its own SplittableRandom,
+    // split in order from the seed, so the results depend only on (seed, threads)
+    public PercolationStats(int n, int trials, long seed, int threads) {
+        this(n, trials, seed, threads, Sampling.UNIFORM);
+    }
+
+    // same as above, with the choice of how sites are drawn within a trial
+    public PercolationStats(int n, int trials, long seed, int threads, Sampling sampling) {
+        this(grids(n), trials, seed, threads, sampling);
+    }
+
+    // perform independent trials on the lattices built by the factory, one
+    // lattice per worker thread, drawing elements uniformly as for n-by-n grids
+    public PercolationStats(Supplier<? extends Lattice> lattices, int trials, long seed,
+                            int threads) {
+        this(lattices, trials, seed, threads, Sampling.UNIFORM);
+    }
+
+    // same as above, with the choice of how elements are drawn within a trial
+    public PercolationStats(Supplier<? extends Lattice> lattices, int trials, long seed,
+                            int threads, Sampling sampling) {
+        if (lattices == null) throw new IllegalArgumentException();
+        if (trials <= 0) throw new IllegalArgumentException();
+        if (threads <= 0) throw new IllegalArgumentException();
+        if (sampling == null) throw new IllegalArgumentException();
+
+        // worker 0's lattice is built here, so that a bad size fails on the calling thread
+        Lattice first = lattices.get();
+        double[] rawResults = new double[trials];
+        int workers = Math.min(threads, trials);
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] rngs = new SplittableRandom[workers];
+        for (int w = 0; w < workers; w++) {
+            rngs[w] = root.split();
+        }
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            inParallel(pool, workers, 0, trials, (w, lo, hi) -> {
+                Trials worker = new Trials(w == 0 ? first : lattices.get(), sampling);
+                for (int itr = lo; itr < hi; itr++) {
+                    rawResults[itr] = worker.next(rngs[w]);
+                }
+            });
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        // in trial order, so the moments only depend on (seed, threads)
+        for (double threshold : rawResults) {
+            record(threshold);
+        }
+    }
+
+    // perform independent trials on an n-by-n grid in batches of interval trials,
+    // saving every batch to the checkpoint file. If the file already holds part
+    // of this run (same n, trials and seed) the run resumes after its last batch.
+    // Trial t draws uniformly from its own generator seeded from (seed, t), so
+    // the results depend neither on the thread count nor on interruptions
+    public PercolationStats(int n, int trials, long seed, int threads, Path checkpoint,
+                            int interval) {
+        if (n <= 0) throw new IllegalArgumentException();
+        if (trials <= 0) throw new IllegalArgumentException();
+        if (threads <= 0) throw new IllegalArgumentException();
+        if (checkpoint == null) throw new IllegalArgumentException();
+        if (interval <= 0) throw new IllegalArgumentException();
+
+        double[] rawResults = new double[trials];
+        int workers = Math.min(threads, interval);
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        ThreadLocal<Trials> local =
+                ThreadLocal.withInitial(() -> new Trials(new Percolation(n), Sampling.UNIFORM));
+        try (TrialCheckpoint saved = new TrialCheckpoint(checkpoint, n, trials, seed)) {
+            saved.read(rawResults);
+            for (int done = saved.completed(); done < trials; done = saved.completed()) {
+                int end = Math.min(trials, done + interval);
+                inParallel(pool, workers, done, end, (w, lo, hi) -> {
+                    Trials worker = local.get();
+                    for (int itr = lo; itr < hi; itr++) {
+                        SplittableRandom rng =
+                                new SplittableRandom(TrialCheckpoint.trialSeed(seed, itr));
+                        rawResults[itr] = worker.next(rng);
+                    }
+                });
+                saved.append(rawResults, done, end - done);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        for (double threshold : rawResults) {
+            record(threshold);
+        }
+    }
+
+    // perform trials on an n-by-n grid until the half-width of the 95% confidence
+    // interval drops below precision (or maxTrials is reached), sites are drawn
+    // by permutation from a generator seeded with seed.
+    // listener (may be null) is told about every completed trial
+    public PercolationStats(int n, double precision, int maxTrials, long seed,
+                            ProgressListener listener) {
+        this(n, precision, maxTrials, seed, 1, Sampling.PERMUTATION, listener);
+    }
+
+    // same as above on a pool of worker threads, with the choice of how sites are
+    // drawn. The trials run in rounds of ROUND_TRIALS per thread and are recorded
+    // in order; trial t draws from its own generator seeded from (seed, t), so the
+    // results depend only on (seed, threads). UNIFORM trials keep no state between
+    // trials and give the same results whatever the thread count
+    public PercolationStats(int n, double precision, int maxTrials, long seed, int threads,
+                            Sampling sampling, ProgressListener listener) {
+        if (n <= 0) throw new IllegalArgumentException();
+        if (!(precision > 0)) throw new IllegalArgumentException();
+        if (maxTrials <= 0) throw new IllegalArgumentException();
+        if (threads <= 0) throw new IllegalArgumentException();
+        if (sampling == null) throw new IllegalArgumentException();
+
+        double[] round = new double[threads * ROUND_TRIALS];
+        Trials[] workers = new Trials[threads];      // by worker, not by pool thread
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            boolean done = false;
+            while (!done) {
+                int from = count;
+                int to = (int) Math.min(maxTrials, (long) from + round.length);
+                inParallel(pool, threads, from, to, (w, lo, hi) -> {
+                    if (workers[w] == null) {
+                        workers[w] = new Trials(new Percolation(n), sampling);
+                    }
+                    Trials worker = workers[w];
+                    for (int itr = lo; itr < hi; itr++) {
+                        SplittableRandom rng =
+                                new SplittableRandom(TrialCheckpoint.trialSeed(seed, itr));
+                        round[itr - from] = worker.next(rng);
+                    }
+                });
+                // trials past the stopping point are dropped
+                for (int i = 0; i < to - from && !done; i++) {
+                    record(round[i]);
+                    double halfWidth = count > 1 ? ci() : Double.POSITIVE_INFINITY;
+                    if (listener != null) listener.trialCompleted(count, runningMean, halfWidth);
+                    done = count >= maxTrials || count >= MIN_TRIALS && halfWidth < precision;
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
         }
     }
 
+    // a contiguous range of trials run by worker w
+    private interface Block {
+        void run(int w, int lo, int hi);
+    }
+
+    // splits trials [from, to) into one contiguous block per worker,
+    // runs the blocks on the pool and waits for all of them
+    private static void inParallel(ForkJoinPool pool, int workers, int from, int to,
+                                   Block block) {
+        try {
+            List<Future<?>> blocks = new ArrayList<Future<?>>(workers);
+            for (int w = 0; w < workers; w++) {
+                // block w covers trials [lo, hi)
+                int worker = w;
+                int lo = from + (int) ((long) (to - from) * w / workers);
+                int hi = from + (int) ((long) (to - from) * (w + 1) / workers);
+                blocks.add(pool.submit(() -> block.run(worker, lo, hi)));
+            }
+            for (Future<?> future : blocks) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running trials", e);
+        }
+        catch (ExecutionException e) {
+            // e.g. the IllegalArgumentException of a lattice built with a bad size
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Trial failed", e.getCause());
+        }
+    }
+
+    // factory of n-by-n Percolation grids, n is checked here rather than in a worker
+    private static Supplier<Percolation> grids(int n) {
+        if (n <= 0) throw new IllegalArgumentException();
+        return () -> new Percolation(n);
+    }
+
+    // adds one threshold to the running moments
+    private void record(double threshold) {
+        count++;
+        double delta = threshold - runningMean;
+        runningMean += delta / count;
+        m2 += delta * (threshold - runningMean);
+    }
+
+    // the trials of one thread: a lattice reused through reset() and
+    // the permutation buffer when sampling by permutation
+    private static final class Trials {
+        private final Lattice lattice;
+        private final int total;
+        private final int[] order;
+
+        private Trials(Lattice lattice, Sampling sampling) {
+            this.lattice = lattice;
+            this.total = lattice.elements();
+            this.order = sampling == Sampling.PERMUTATION ? identity(total) : null;
+        }
+
+        // runs one trial with random numbers from rng and returns its threshold
+        private double next(SplittableRandom rng) {
+            lattice.reset();
+            if (order != null) openPermuted(lattice, order, rng);
+            else openUniform(lattice, rng);
+            return lattice.numberOfOpenElements() / (double) total;
+        }
+    }
+
+    // opens uniformly drawn elements until the lattice percolates
+    private static void openUniform(Lattice lattice, SplittableRandom rng) {
+        int total = lattice.elements();
+        while (!lattice.percolates()) {
+            lattice.openElement(rng.nextInt(total));
+        }
+    }
+
+    // opens elements in the order of a random permutation until the lattice percolates.
+    // The permutation is built lazily by Fisher-Yates: step i swaps a random
+    // element of order[i, total) into position i, so only the elements actually
+    // opened are shuffled. order needs no reset between trials, any arrangement
+    // of the indices shuffles into a uniformly random permutation
+    private static void openPermuted(Lattice lattice, int[] order, SplittableRandom rng) {
+        int total = order.length;
+        for (int i = 0; !lattice.percolates(); i++) {
+            int j = i + rng.nextInt(total - i);
+            int element = order[j];
+            order[j] = order[i];
+            order[i] = element;
+            lattice.openElement(element);
+        }
+    }
+
+    // the array {0, 1, ..., size - 1}
+    private static int[] identity(int size) {
+        int[] a = new int[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = i;
+        }
+        return a;
+    }
+
     // sample mean of percolation threshold
     public double mean() {
-        return StdStats.mean(rawResults);
+        return runningMean;
     }
 
     // sample standard deviation of percolation threshold
     public double stddev() {
-        return StdStats.stddev(rawResults);
+        return Math.sqrt(m2 / (count - 1));
+    }
+
+    // number of trials performed
+    public int trials() {
+        return count;
     }
 
     // low endpoint of 95% confidence interval
@@ -51,7 +347,7 @@ public class PercolationStats {
     }
 
     private double ci() {
-        return 1.96 * stddev() / Math.sqrt(rawResults.length);
+        return 1.96 * stddev() / Math.sqrt(count);
     }
 
     // test client (see below)
@@ -59,9 +355,49 @@ public class PercolationStats {
         // Input
         // n - grid size
         // trials - the number of repetitions
+        // seed (optional) - seed of the random generator, switches to the parallel mode
+        // threads (optional) - number of worker threads, defaults to all cores
+        // sampling (optional) - UNIFORM (default) or PERMUTATION
+        // checkpointFile interval (optional, instead of sampling) - save every interval
+        //   trials to checkpointFile, resuming the run it already holds
+        // Adaptive form, told apart by the decimal point of precision
+        // precision - stop once the 95% confidence half-width is below it, e.g. 0.001
+        // maxTrials - stop after that many trials in any case
+        // seed, threads (optional), sampling (optional, defaults to PERMUTATION)
         int n = Integer.parseInt(args[0]);
-        int trials = Integer.parseInt(args[1]);
-        PercolationStats objPrcStats = new PercolationStats(n, trials);
+        PercolationStats objPrcStats;
+        if (args[1].contains(".")) {
+            double precision = Double.parseDouble(args[1]);
+            int maxTrials = Integer.parseInt(args[2]);
+            long seed = Long.parseLong(args[3]);
+            int threads = args.length > 4 ? Integer.parseInt(args[4])
+                                          : Runtime.getRuntime().availableProcessors();
+            Sampling sampling = args.length > 5 ? Sampling.valueOf(args[5])
+                                                : Sampling.PERMUTATION;
+            objPrcStats = new PercolationStats(n, precision, maxTrials, seed, threads,
+                                               sampling, null);
+            System.out.print(String.format("trials\t = %d\n", objPrcStats.trials()));
+        }
+        else if (args.length > 5) {
+            int trials = Integer.parseInt(args[1]);
+            long seed = Long.parseLong(args[2]);
+            int threads = Integer.parseInt(args[3]);
+            Path checkpoint = Paths.get(args[4]);
+            int interval = Integer.parseInt(args[5]);
+            objPrcStats = new PercolationStats(n, trials, seed, threads, checkpoint, interval);
+        }
+        else if (args.length > 2) {
+            int trials = Integer.parseInt(args[1]);
+            long seed = Long.parseLong(args[2]);
+            int threads = args.length > 3 ? Integer.parseInt(args[3])
+                                          : Runtime.getRuntime().availableProcessors();
+            Sampling sampling = args.length > 4 ? Sampling.valueOf(args[4]) : Sampling.UNIFORM;
+            objPrcStats = new PercolationStats(n, trials, seed, threads, sampling);
+        }
+        else {
+            int trials = Integer.parseInt(args[1]);
+            objPrcStats = new PercolationStats(n, trials);
+        }
         String meanStr = String.format("mean\t = %f\n", objPrcStats.mean());
         String stdStr = String.format("stddev\t = %f\n", objPrcStats.stddev());
         String stdCI = String
@@ -0,0 +1,200 @@
+/* *****************************************************************************
+ *  Compilation:  javac PercolationSweep.java
+ *  Execution:    java PercolationSweep sizes trials seed [threads] [csv|bin] [file]
+ *  e.g.          java PercolationSweep 64,128,256,512 100,1000 42 8 csv sweep.csv
+ *
+ *  Runs PercolationStats for every (n, trials) pair of the two lists in one
+ *  JVM. Each point is a single-threaded job; the jobs are handed to a pool of
+ *  worker threads in decreasing order of estimated cost (n^2 * trials), the
+ *  longest-processing-time-first rule that keeps the last cores from idling
+ *  on one big job at the end. A row is written as soon as its point is done:
+ *
+ *  n, trials, mean, stddev, confidenceLo, confidenceHi, seconds, opensPerSecond
+ *
+ *  csv - one text line per point after a header line (default)
+ *  bin - one record per point: int n, int trials, then the six values as doubles
+ *
+ *  Output goes to file, or to standard output when no file is given. The
+ *  seed of a point only depends on the seed and the point's position in the
+ *  lists, so a sweep can be rerun point by point.
+ **************************************************************************** */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PercolationSweep {
+
+    // the output formats
+    public enum Format { CSV, BIN }
+
+    private static final String CSV_HEADER =
+            "n,trials,mean,stddev,confidenceLo,confidenceHi,seconds,opensPerSecond\n";
+
+    // one (n, trials) point of the sweep
+    private static final class Job {
+        private final int n;
+        private final int trials;
+        private final long seed;
+
+        private Job(int n, int trials, long seed) {
+            this.n = n;
+            this.trials = trials;
+            this.seed = seed;
+        }
+
+        // estimated cost: sites per trial times trials
+        private double cost() {
+            return (double) n * n * trials;
+        }
+    }
+
+    private final DataOutputStream out;
+    private final Format format;
+
+    private PercolationSweep(OutputStream out, Format format) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.format = format;
+    }
+
+    // runs every (n, trials) point with the given number of threads and
+    // writes one row per point to out, in the order the points complete
+    public static void run(int[] sizes, int[] trials, long seed, int threads, Format format,
+                           OutputStream out) throws IOException {
+        if (sizes.length == 0 || trials.length == 0) throw new IllegalArgumentException();
+        if (threads <= 0 || format == null || out == null) throw new IllegalArgumentException();
+
+        List<Job> jobs = new ArrayList<Job>();
+        for (int n : sizes) {
+            for (int t : trials) {
+                if (n <= 0 || t <= 0) throw new IllegalArgumentException();
+                jobs.add(new Job(n, t, TrialCheckpoint.trialSeed(seed, jobs.size())));
+            }
+        }
+        jobs.sort(Comparator.comparingDouble(Job::cost).reversed());
+
+        PercolationSweep sweep = new PercolationSweep(out, format);
+        sweep.writeHeader();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, jobs.size()));
+        CompletionService<Object> done = new ExecutorCompletionService<Object>(pool);
+        List<Future<Object>> running = new ArrayList<Future<Object>>(jobs.size());
+        try {
+            for (Job job : jobs) {
+                running.add(done.submit(() -> sweep.runJob(job), null));
+            }
+            // in completion order, so that the first failure is seen at once
+            for (int i = 0; i < running.size(); i++) {
+                done.take().get();
+            }
+            sweep.out.flush();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sweeping", e);
+        }
+        catch (ExecutionException e) {
+            // the remaining points would only delay the report
+            for (Future<Object> future : running) {
+                future.cancel(true);
+            }
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException("Sweep point failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void runJob(Job job) {
+        long start = System.nanoTime();
+        PercolationStats stats = new PercolationStats(job.n, job.trials, job.seed, 1,
+                                                      PercolationStats.Sampling.PERMUTATION);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        // every trial opens mean * n^2 sites on average
+        double opens = stats.mean() * job.n * job.n * job.trials;
+        try {
+            writeRow(job, stats, seconds, opens / seconds);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    // rows of concurrent jobs must not interleave, and are flushed one by one
+    private synchronized void writeRow(Job job, PercolationStats stats, double seconds,
+                                       double opensPerSecond) throws IOException {
+        if (format == Format.CSV) {
+            String row = String.format("%d,%d,%.8f,%.8f,%.8f,%.8f,%.3f,%.0f\n", job.n,
+                                       job.trials, stats.mean(), stats.stddev(),
+                                       stats.confidenceLo(), stats.confidenceHi(), seconds,
+                                       opensPerSecond);
+            out.write(row.getBytes(StandardCharsets.US_ASCII));
+        }
+        else {
+            out.writeInt(job.n);
+            out.writeInt(job.trials);
+            out.writeDouble(stats.mean());
+            out.writeDouble(stats.stddev());
+            out.writeDouble(stats.confidenceLo());
+            out.writeDouble(stats.confidenceHi());
+            out.writeDouble(seconds);
+            out.writeDouble(opensPerSecond);
+        }
+        out.flush();
+    }
+
+    // "64,128,256" -> {64, 128, 256}
+    private static int[] parseList(String list) {
+        String[] items = list.split(",");
+        int[] values = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            values[i] = Integer.parseInt(items[i].trim());
+        }
+        return values;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Input
+        // sizes - comma separated grid sizes
+        // trials - comma separated trial counts
+        // seed - seed of the sweep
+        // threads (optional) - number of worker threads, defaults to all cores
+        // format (optional) - csv (default) or bin
+        // file (optional) - output file, defaults to standard output
+        int[] sizes = parseList(args[0]);
+        int[] trials = parseList(args[1]);
+        long seed = Long.parseLong(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                                      : Runtime.getRuntime().availableProcessors();
+        Format format = args.length > 4 ? Format.valueOf(args[4].toUpperCase()) : Format.CSV;
+        if (args.length > 5) {
+            try (OutputStream file = new FileOutputStream(args[5])) {
+                run(sizes, trials, seed, threads, format, file);
+            }
+        }
+        else {
+            run(sizes, trials, seed, threads, format, System.out);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/* *****************************************************************************
+ *  Compilation:  javac StreamingPercolation.java
+ *  Execution:    java StreamingPercolation input.txt
+ *
+ *  input.txt contains the grid size n followed by the n rows of the grid,
+ *  one integer per site, 1 for open and 0 for blocked:
+ *  n
+ *  s11 s12 ... s1n
+ *  .....
+ *  sn1 sn2 ... snn
+ *
+ *  Percolation of a static grid read one row at a time (Hoshen-Kopelman).
+ *  Only two rows of cluster labels are kept, plus an equivalence table over
+ *  the 2n labels a pair of rows can use: labels of the previous row live in
+ *  [0, n), fresh labels of the current row in [n, 2n). Once a row is done its
+ *  labels are renumbered into [0, n) and the table is cleared, so memory is
+ *  O(n) however many rows are streamed.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+
+public class StreamingPercolation {
+
+    private final int gridSize;
+    private int[] previous;          // cluster labels of the last row, -1 if blocked
+    private int[] current;           // cluster labels of the row being added
+    private final int[] parent;      // equivalence table over labels [0, 2n)
+    private final boolean[] top;     // top[r] = does the cluster of root r touch row 1?
+    private final int[] relabel;     // root -> label in [0, n) while renumbering
+    private final boolean[] relabelTop;
+    private int nbRows;
+    private int nbTopClusters;
+    private boolean percolates;
+
+    // prepares for rows of n sites
+    public StreamingPercolation(int n) {
+        if (n <= 0) throw new IllegalArgumentException();
+        gridSize = n;
+        previous = new int[n];
+        current = new int[n];
+        parent = new int[2 * n];
+        top = new boolean[2 * n];
+        relabel = new int[2 * n];
+        relabelTop = new boolean[n];
+        nbRows = 0;
+        nbTopClusters = 0;
+        percolates = false;
+    }
+
+    // adds the next row of the grid, row[j] tells whether column j + 1 is open
+    public void addRow(boolean[] row) {
+        if (row == null || row.length != gridSize) throw new IllegalArgumentException();
+        boolean firstRow = nbRows == 0;
+        int fresh = gridSize;
+
+        for (int j = 0; j < gridSize; j++) {
+            if (!row[j]) {
+                current[j] = -1;
+                continue;
+            }
+            int label = j > 0 ? current[j - 1] : -1;
+            if (!firstRow && previous[j] >= 0) {
+                if (label < 0) label = previous[j];
+                else union(label, previous[j]);
+            }
+            if (label < 0) {
+                label = fresh++;
+                parent[label] = label;
+                top[label] = firstRow;
+                if (firstRow) nbTopClusters++;
+            }
+            current[j] = label;
+        }
+
+        renumber();
+        int[] swap = previous;
+        previous = current;
+        current = swap;
+        nbRows++;
+    }
+
+    // number of rows added so far
+    public int numberOfRows() {
+        return nbRows;
+    }
+
+    // is some open site of the last added row connected to the first row?
+    // after all n rows have been added this is the usual percolates()
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // number of distinct clusters touching the first row, in the rows seen so far
+    public int numberOfTopClusters() {
+        return nbTopClusters;
+    }
+
+    // maps the roots of the current row onto [0, n) in order of appearance
+    // and resets the equivalence table to those labels only
+    private void renumber() {
+        for (int i = 0; i < 2 * gridSize; i++) {
+            relabel[i] = -1;
+        }
+        int count = 0;
+        percolates = false;
+        for (int j = 0; j < gridSize; j++) {
+            if (current[j] < 0) continue;
+            int root = find(current[j]);
+            if (relabel[root] < 0) {
+                relabel[root] = count;
+                relabelTop[count] = top[root];
+                count++;
+            }
+            current[j] = relabel[root];
+            if (top[root]) percolates = true;
+        }
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+            top[i] = relabelTop[i];
+        }
+    }
+
+    // root of the label p, halving the path on the way up
+    private int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    // merges the clusters of labels p and q, two top clusters become one
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return;
+        if (top[rootP] && top[rootQ]) nbTopClusters--;
+        parent[rootP] = rootQ;
+        top[rootQ] = top[rootQ] || top[rootP];
+    }
+
+    // test client: streams the grid from a file, one row at a time
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        int n = in.readInt();
+        StreamingPercolation perc = new StreamingPercolation(n);
+        boolean[] row = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                row[j] = in.readInt() != 0;
+            }
+            perc.addRow(row);
+        }
+        StdOut.println(String.format("percolates\t = %b", perc.percolates()));
+        StdOut.println(String.format("top clusters\t = %d", perc.numberOfTopClusters()));
+    }
+}
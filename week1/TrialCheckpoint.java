@@ -0,0 +1,188 @@
+/* *****************************************************************************
+ *  Compilation:  javac TrialCheckpoint.java
+ *  Execution:    java TrialCheckpoint file
+ *
+ *  Binary checkpoint of a PercolationStats run: the parameters of the run,
+ *  the number of completed trials and their thresholds.
+ *
+ *  Layout (big-endian):
+ *  offset  0  int     magic "PCKP"
+ *          4  int     format version
+ *          8  int     n
+ *         12  int     trials
+ *         16  long    seed
+ *         24  int     completed trials
+ *         28  int     reserved (0)
+ *         32  double  thresholds of trials 0 .. completed - 1
+ *
+ *  append() writes a whole batch of thresholds and forces it to disk
+ *  before it updates the completed count in the header.
+ *  A crash in between leaves the old count, and the orphaned thresholds are
+ *  overwritten on resume. Trial t draws from a generator seeded from
+ *  (seed, t) only, so (seed, completed) is all the random state a resumed
+ *  run needs.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class TrialCheckpoint implements AutoCloseable {
+
+    private static final int MAGIC = 0x50434B50;     // "PCKP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int COMPLETED_OFFSET = 24;
+    private static final int BATCH_DOUBLES = 1 << 16;   // thresholds per read or write
+
+    private final FileChannel channel;
+    private final int gridSize;
+    private final int nbTrials;
+    private final long seed;
+    private int completed;
+
+    // opens the checkpoint of the run (n, trials, seed) at file, creating it if
+    // it does not exist. An existing file must belong to the same run
+    public TrialCheckpoint(Path file, int n, int trials, long seed) throws IOException {
+        if (file == null || n <= 0 || trials <= 0) throw new IllegalArgumentException();
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                gridSize = n;
+                nbTrials = trials;
+                this.seed = seed;
+                completed = 0;
+                writeHeader();
+            }
+            else {
+                ByteBuffer header = readFully(0, HEADER_BYTES);
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException(file + " is not a percolation checkpoint");
+                }
+                gridSize = header.getInt();
+                nbTrials = header.getInt();
+                this.seed = header.getLong();
+                completed = header.getInt();
+                if (gridSize != n || nbTrials != trials || this.seed != seed) {
+                    throw new IllegalArgumentException(String.format(
+                            "%s holds the run n=%d trials=%d seed=%d", file, gridSize,
+                            nbTrials, this.seed));
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // opens an existing checkpoint whatever its run
+    private TrialCheckpoint(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(file + " is not a percolation checkpoint");
+            }
+            gridSize = header.getInt();
+            nbTrials = header.getInt();
+            seed = header.getLong();
+            completed = header.getInt();
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // number of trials already in the file
+    public int completed() {
+        return completed;
+    }
+
+    // copies the completed thresholds into results[0, completed()),
+    // BATCH_DOUBLES at a time so that no byte count overflows an int
+    public void read(double[] results) throws IOException {
+        if (results.length < completed) throw new IllegalArgumentException();
+        for (int from = 0; from < completed; from += BATCH_DOUBLES) {
+            int count = Math.min(BATCH_DOUBLES, completed - from);
+            ByteBuffer body = readFully(HEADER_BYTES + (long) from * 8, count * 8);
+            body.asDoubleBuffer().get(results, from, count);
+        }
+    }
+
+    // stores results[from, from + count) as trials completed() ...
+    // completed() + count - 1, then records them as completed
+    public void append(double[] results, int from, int count) throws IOException {
+        if (count < 0 || completed + count > nbTrials) throw new IllegalArgumentException();
+        for (int done = 0; done < count; done += BATCH_DOUBLES) {
+            int batch = Math.min(BATCH_DOUBLES, count - done);
+            ByteBuffer body = ByteBuffer.allocate(batch * 8);
+            body.asDoubleBuffer().put(results, from + done, batch);
+            writeFully(body, HEADER_BYTES + (long) (completed + done) * 8);
+        }
+        channel.force(false);
+
+        completed += count;
+        ByteBuffer field = ByteBuffer.allocate(4);
+        field.putInt(completed).flip();
+        writeFully(field, COMPLETED_OFFSET);
+        channel.force(false);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // seed of the generator of trial t in the run seeded with seed:
+    // the golden-ratio sequence scrambled by a 64-bit finaliser (Stafford's Mix13),
+    // so that neighbouring trials get unrelated generators
+    public static long trialSeed(long seed, int t) {
+        long z = seed + (t + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(gridSize).putInt(nbTrials)
+              .putLong(seed).putInt(completed).putInt(0).flip();
+        writeFully(header, 0);
+        channel.force(false);
+    }
+
+    private ByteBuffer readFully(long position, int bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated checkpoint");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    // prints the run and the progress stored in a checkpoint file
+    public static void main(String[] args) throws IOException {
+        try (TrialCheckpoint checkpoint = new TrialCheckpoint(Paths.get(args[0]))) {
+            StdOut.println(String.format("n = %d, trials = %d, seed = %d",
+                                         checkpoint.gridSize, checkpoint.nbTrials,
+                                         checkpoint.seed));
+            StdOut.println(String.format("completed = %d (%.1f%%)", checkpoint.completed,
+                                         100.0 * checkpoint.completed / checkpoint.nbTrials));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/* *****************************************************************************
+ *  Compilation:  javac TriangularPercolation.java
+ *  Execution:    java TriangularPercolation n trials seed [threads]
+ *
+ *  Site percolation on an n-by-n triangular lattice (the site lattice of the
+ *  hexagonal tiling), drawn as a square grid where every site also touches
+ *  its upper-right and lower-left diagonal neighbours:
+ *
+ *     n n
+ *   n-s-n
+ *   n n
+ *
+ *  Same padded layout as FastPercolation, the six neighbours are fixed
+ *  offsets. The site percolation threshold of this lattice is exactly 1/2.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+public class TriangularPercolation extends AbstractLattice {
+
+    private final int gridSize;    // n
+    private final int width;       // n + 2, row length including the sentinels
+
+    // creates n-by-n lattice, with all sites initially blocked
+    public TriangularPercolation(int n) {
+        super(checkedPositions(n));
+        gridSize = n;
+        width = n + 2;
+    }
+
+    private static int checkedPositions(int n) {
+        if (n <= 0 || n > 46338) throw new IllegalArgumentException();
+        return (n + 2) * (n + 2);
+    }
+
+    // opens the site (row, col) if it is not open already, row and col in [1, n]
+    public void open(int row, int col) {
+        int p = index(row, col);
+        if (isOpenAt(p)) return;
+
+        byte flags = OPEN;
+        if (row == 1) flags |= TOP;
+        if (row == gridSize) flags |= BOTTOM;
+        makeSet(p, flags);
+        countOpen();
+
+        if (isOpenAt(p - width)) union(p, p - width);
+        if (isOpenAt(p + width)) union(p, p + width);
+        if (isOpenAt(p - 1)) union(p, p - 1);
+        if (isOpenAt(p + 1)) union(p, p + 1);
+        if (isOpenAt(p - width + 1)) union(p, p - width + 1);
+        if (isOpenAt(p + width - 1)) union(p, p + width - 1);
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        return isOpenAt(index(row, col));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        int p = index(row, col);
+        return isOpenAt(p) && isTopConnected(p);
+    }
+
+    // sites are the elements, numbered row by row from 0
+    public int elements() {
+        return gridSize * gridSize;
+    }
+
+    public void openElement(int i) {
+        open(i / gridSize + 1, i % gridSize + 1);
+    }
+
+    private int index(int row, int col) {
+        if (row <= 0 || row > gridSize || col <= 0 || col > gridSize) {
+            throw new IllegalArgumentException();
+        }
+        return row * width + col;
+    }
+
+    // test client: threshold estimate through the PercolationStats driver
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        long seed = Long.parseLong(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                                      : Runtime.getRuntime().availableProcessors();
+        PercolationStats stats = new PercolationStats(() -> new TriangularPercolation(n),
+                                                      trials, seed, threads,
+                                                      PercolationStats.Sampling.PERMUTATION);
+        StdOut.println(String.format("mean\t = %f", stats.mean()));
+        StdOut.println(String.format("stddev\t = %f", stats.stddev()));
+    }
+}
@@ -0,0 +1,238 @@
+/******************************************************************************
+ *  Compilation:  javac BoundedBlockingDeque.java
+ *  Execution:    java -ea BoundedBlockingDeque
+ *
+ *  Bounded, thread-safe deque for handing work between pipeline stages,
+ *  built on the linked-list Deque behind one ReentrantLock with the two
+ *  conditions notEmpty and notFull.
+ *
+ *  addFirst/addLast wait while the deque is full and removeFirst/removeLast
+ *  wait while it is empty; the timed variants give up after the timeout.
+ *  drainTo() and addAll() move many items per lock acquisition and signal
+ *  once per batch, instead of locking and signalling once per item.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class BoundedBlockingDeque<Item> {
+    private final Deque<Item> deque = new Deque<Item>();   // guarded by lock
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // construct an empty deque holding at most capacity items
+    public BoundedBlockingDeque(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        this.capacity = capacity;
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return deque.isEmpty();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        lock.lock();
+        try {
+            return deque.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // maximum number of items
+    public int capacity() {
+        return capacity;
+    }
+
+    // add the item to the front, waiting for space if the deque is full
+    public void addFirst(Item item) throws InterruptedException {
+        add(item, true, -1);
+    }
+
+    // add the item to the back, waiting for space if the deque is full
+    public void addLast(Item item) throws InterruptedException {
+        add(item, false, -1);
+    }
+
+    // add the item to the front, waiting at most timeout for space,
+    // returns false if the deque was still full
+    public boolean addFirst(Item item, long timeout, TimeUnit unit) throws InterruptedException {
+        return add(item, true, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    // add the item to the back, waiting at most timeout for space,
+    // returns false if the deque was still full
+    public boolean addLast(Item item, long timeout, TimeUnit unit) throws InterruptedException {
+        return add(item, false, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    // remove and return the item from the front, waiting if the deque is empty
+    public Item removeFirst() throws InterruptedException {
+        return remove(true, -1);
+    }
+
+    // remove and return the item from the back, waiting if the deque is empty
+    public Item removeLast() throws InterruptedException {
+        return remove(false, -1);
+    }
+
+    // remove and return the item from the front, waiting at most timeout,
+    // returns null if the deque was still empty
+    public Item removeFirst(long timeout, TimeUnit unit) throws InterruptedException {
+        return remove(true, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    // remove and return the item from the back, waiting at most timeout,
+    // returns null if the deque was still empty
+    public Item removeLast(long timeout, TimeUnit unit) throws InterruptedException {
+        return remove(false, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    // add all the items to the back in order, waiting for space as needed.
+    // Every lock acquisition moves as many items as fit
+    public void addAll(Collection<? extends Item> items) throws InterruptedException {
+        if (items == null) throw new IllegalArgumentException();
+        // snapshot, so that the count cannot disagree with what is added
+        Object[] pending = items.toArray();
+        for (Object item : pending) {
+            if (item == null) throw new IllegalArgumentException("Attempt to add null in deque");
+        }
+        int moved = 0;
+        while (moved < pending.length) {
+            lock.lockInterruptibly();
+            try {
+                while (deque.size() == capacity) {
+                    notFull.await();
+                }
+                int end = Math.min(pending.length, moved + capacity - deque.size());
+                for (int i = moved; i < end; i++) {
+                    deque.addLast((Item) pending[i]);
+                }
+                moved = end;
+                notEmpty.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // move at most max items from the front into the collection without waiting,
+    // returns the number of items moved
+    public int drainTo(Collection<? super Item> target, int max) {
+        if (target == null) throw new IllegalArgumentException();
+        if (max <= 0) return 0;
+        lock.lock();
+        try {
+            int moved = 0;
+            while (moved < max && !deque.isEmpty()) {
+                target.add(deque.removeFirst());
+                moved++;
+            }
+            if (moved > 0) notFull.signalAll();
+            return moved;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // shared body of the add methods, nanos < 0 means wait without timeout
+    private boolean add(Item item, boolean front, long nanos) throws InterruptedException {
+        boolean timed = nanos >= 0;
+        if (item == null) throw new IllegalArgumentException("Attempt to add null in deque");
+        lock.lockInterruptibly();
+        try {
+            while (deque.size() == capacity) {
+                if (!timed) notFull.await();
+                else if (nanos <= 0) return false;
+                else nanos = notFull.awaitNanos(nanos);
+            }
+            if (front) deque.addFirst(item);
+            else deque.addLast(item);
+            notEmpty.signal();
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // shared body of the remove methods, nanos < 0 means wait without timeout
+    private Item remove(boolean front, long nanos) throws InterruptedException {
+        boolean timed = nanos >= 0;
+        lock.lockInterruptibly();
+        try {
+            while (deque.isEmpty()) {
+                if (!timed) notEmpty.await();
+                else if (nanos <= 0) return null;
+                else nanos = notEmpty.awaitNanos(nanos);
+            }
+            Item item = front ? deque.removeFirst() : deque.removeLast();
+            notFull.signal();
+            return item;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // test client: a producer hands batches to a consumer through a small deque
+    public static void main(String[] args) throws InterruptedException {
+        BoundedBlockingDeque<Integer> deque = new BoundedBlockingDeque<Integer>(16);
+        assert deque.removeFirst(10, TimeUnit.MILLISECONDS) == null : "Empty deque returned an item";
+
+        int n = 100000;
+        Thread producer = new Thread(() -> {
+            List<Integer> batch = new ArrayList<Integer>();
+            try {
+                for (int i = 0; i < n; i++) {
+                    batch.add(i);
+                    if (batch.size() == 50) {
+                        deque.addAll(batch);
+                        batch.clear();
+                    }
+                }
+                deque.addAll(batch);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        List<Integer> received = new ArrayList<Integer>(n);
+        while (received.size() < n) {
+            if (deque.drainTo(received, 32) == 0) {
+                received.add(deque.removeFirst());
+            }
+        }
+        producer.join();
+        for (int i = 0; i < n; i++) {
+            assert received.get(i) == i : "Out of order";
+        }
+
+        for (int i = 0; i < deque.capacity(); i++) {
+            deque.addLast(i);
+        }
+        assert !deque.addFirst(-1, 10, TimeUnit.MILLISECONDS) : "Full deque accepted an item";
+        StdOut.println(String.format("received %d items, size %d", received.size(), deque.size()));
+    }
+}
@@ -0,0 +1,224 @@
+/******************************************************************************
+ *  Compilation:  javac ByteTokenizer.java
+ *  Execution:    java ByteTokenizer file
+ *
+ *  Whitespace-separated tokens read straight from the bytes of a file or a
+ *  channel. Only next() and the slow path of nextDouble() create Strings,
+ *  so a reader that steps over most tokens with skip() allocates nothing for
+ *  them.
+ *
+ *  - open(path) memory-maps the file in windows of up to 1 GB. A window
+ *    always starts at the token being read, so a token is never split
+ *    between two windows.
+ *  - ByteTokenizer(channel) reads through a 64 KB buffer. Bytes of a token
+ *    that runs over the end of the buffer are moved to its front before the
+ *    next read, and the buffer doubles for tokens longer than itself.
+ *
+ *  A token is a maximal run of bytes above ' ', so tokens are split on ASCII
+ *  spaces and control characters only. Bytes of multibyte UTF-8 characters
+ *  are all above ' ' and stay inside their token, which is decoded as UTF-8.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+public class ByteTokenizer implements AutoCloseable {
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    // powers of ten that are exact doubles, for the fast path of nextDouble()
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private final ReadableByteChannel channel;
+    private final FileChannel file;    // the file of a mapped tokenizer, otherwise null
+    private final long fileSize;
+    private long base;                 // file offset of buffer index 0, mapped only
+    private ByteBuffer buffer;         // bytes [0, limit) are valid
+    private int limit;
+    private int pos;                   // next byte to look at
+    private boolean eof;               // the channel has no more bytes, buffered only
+    private byte[] scratch = new byte[64];
+
+    // tokens of the file, memory-mapped
+    public static ByteTokenizer open(Path path) throws IOException {
+        if (path == null) throw new IllegalArgumentException();
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ByteTokenizer(file, file.size());
+        }
+        catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    // tokens of the channel, read through a buffer
+    public ByteTokenizer(ReadableByteChannel channel) {
+        if (channel == null) throw new IllegalArgumentException();
+        this.channel = channel;
+        this.file = null;
+        this.fileSize = -1;
+        this.buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    }
+
+    private ByteTokenizer(FileChannel file, long fileSize) throws IOException {
+        this.channel = file;
+        this.file = file;
+        this.fileSize = fileSize;
+        map(0);
+    }
+
+    // is there another token? Skips the whitespace before it
+    public boolean hasNext() throws IOException {
+        while (true) {
+            while (pos < limit && (buffer.get(pos) & 0xFF) <= ' ') pos++;
+            if (pos < limit) return true;
+            if (refill(pos) < 0) return false;
+        }
+    }
+
+    // step over the next token without decoding it, false if there is none
+    public boolean skip() throws IOException {
+        if (!hasNext()) return false;
+        while (true) {
+            while (pos < limit && (buffer.get(pos) & 0xFF) > ' ') pos++;
+            if (pos < limit || refill(pos) < 0) return true;
+        }
+    }
+
+    // the next token, null if there is none
+    public String next() throws IOException {
+        if (!hasNext()) return null;
+        int start = scan();
+        int length = pos - start;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length,
+                              StandardCharsets.UTF_8);
+        }
+        return new String(copy(start, length), 0, length, StandardCharsets.UTF_8);
+    }
+
+    // the next token as a double. Plain decimals of up to 15 digits are
+    // parsed from the bytes, anything else goes through Double.parseDouble
+    public double nextDouble() throws IOException {
+        if (!hasNext()) throw new NoSuchElementException("No more tokens");
+        int start = scan();
+        int i = start;
+        boolean negative = buffer.get(i) == '-';
+        if (negative || buffer.get(i) == '+') i++;
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;                 // digits after the point, -1 without a point
+        for (; i < pos; i++) {
+            int b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = 10 * mantissa + (b - '0');
+                digits++;
+                if (fraction >= 0) fraction++;
+            }
+            else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            }
+            else {
+                break;
+            }
+        }
+        if (i == pos && digits > 0 && digits < POWERS_OF_TEN.length) {
+            // mantissa and the power of ten are exact, one division rounds once
+            double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+            return negative ? -value : value;
+        }
+        int length = pos - start;
+        String token = new String(copy(start, length), 0, length, StandardCharsets.US_ASCII);
+        return Double.parseDouble(token);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // advance pos to the end of the token starting at pos, returns its start
+    private int scan() throws IOException {
+        int start = pos;
+        while (true) {
+            while (pos < limit && (buffer.get(pos) & 0xFF) > ' ') pos++;
+            if (pos < limit) return start;
+            int shift = refill(start);
+            if (shift < 0) return start;
+            start -= shift;
+        }
+    }
+
+    // bytes [start, start + length) of the buffer, in scratch
+    private byte[] copy(int start, int length) {
+        if (scratch.length < length) scratch = new byte[Math.max(length, 2 * scratch.length)];
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(start + i);
+        }
+        return scratch;
+    }
+
+    // load more bytes, keeping those from index keep on, which move to index
+    // 0. Returns how far they moved, or -1 at the end of the input
+    private int refill(int keep) throws IOException {
+        if (file != null) {
+            if (base + limit >= fileSize) return -1;
+            if (keep == 0) throw new IllegalStateException("Token longer than a map window");
+            map(base + keep);
+        }
+        else {
+            if (eof) return -1;
+            if (keep == 0 && limit == buffer.capacity()) {
+                ByteBuffer bigger = ByteBuffer.allocate(2 * buffer.capacity());
+                System.arraycopy(buffer.array(), 0, bigger.array(), 0, limit);
+                buffer = bigger;
+            }
+            else {
+                System.arraycopy(buffer.array(), keep, buffer.array(), 0, limit - keep);
+            }
+            limit -= keep;
+            buffer.clear();
+            buffer.position(limit);
+            int read = 0;
+            while (read == 0) {
+                read = channel.read(buffer);
+            }
+            if (read < 0) eof = true;      // nothing new, the next call returns -1
+            else limit += read;
+        }
+        pos -= keep;
+        return keep;
+    }
+
+    // map the window of the file starting at offset
+    private void map(long offset) throws IOException {
+        long bytes = Math.min(WINDOW_BYTES, fileSize - offset);
+        buffer = file.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+        base = offset;
+        limit = (int) bytes;
+    }
+
+    // test client: counts the tokens of a file, decoding every tenth one
+    public static void main(String[] args) throws IOException {
+        long tokens = 0;
+        long chars = 0;
+        try (ByteTokenizer in = open(Paths.get(args[0]))) {
+            while (in.hasNext()) {
+                if (tokens++ % 10 == 0) chars += in.next().length();
+                else in.skip();
+            }
+        }
+        StdOut.println(String.format("%d tokens, %d chars in every tenth", tokens, chars));
+    }
+}
@@ -0,0 +1,211 @@
+/******************************************************************************
+ *  Compilation:  javac ConcurrentRandomizedQueue.java
+ *  Execution:    java -ea ConcurrentRandomizedQueue stripes threads
+ *
+ *  Thread-safe randomized queue, striped over S RandomizedQueues (S a power
+ *  of two, by default the smallest one >= the number of cores), each behind
+ *  its own lock.
+ *
+ *  - enqueue() looks at two random stripes and puts the item in the one
+ *    holding fewer items. It only takes a lock that is free (tryLock) and
+ *    moves on to another random pair when both are held, so a producer never
+ *    waits behind another thread unless S pairs in a row were all busy.
+ *  - dequeue() first claims an item from the global count, so it only
+ *    searches once an item is known to exist, then locks random stripes
+ *    until it finds a non-empty one and removes a random item from it. It
+ *    yields the processor after every S empty stripes in a row, so that a
+ *    search that keeps missing lets the other threads run.
+ *
+ *  Fairness. Given the stripe sizes at the time of a dequeue, an item in a
+ *  stripe holding s items is returned with probability 1 / (S' s), where S'
+ *  is the number of non-empty stripes, against 1 / n for an exact randomized
+ *  queue of n items. The bias of an item is thus the mean stripe size over
+ *  the size of its stripe, and every item is within a factor
+ *  s_max / s_min of uniform. The two-choice enqueue tends to refill short
+ *  stripes first, but there is no bound on the gap: dequeues remove from
+ *  random stripes, and an enqueue that finds its pair locked goes to
+ *  another pair. The test client measures the spread of the stripe sizes
+ *  after a concurrent run instead; stripes much larger than that spread
+ *  keep the ratio close to 1.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentRandomizedQueue<Item> {
+
+    // one sub-queue and its lock
+    private static final class Stripe<Item> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final RandomizedQueue<Item> items =
+                new RandomizedQueue<Item>(RandomSource.threadLocal());
+        private volatile int size;   // items.size(), readable without the lock
+    }
+
+    private final Stripe<Item>[] stripes;
+    private final int mask;                      // stripes.length - 1
+    private final AtomicInteger count = new AtomicInteger();
+    private final RandomSource random = RandomSource.threadLocal();
+
+    // construct an empty queue with one stripe per core
+    public ConcurrentRandomizedQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    // construct an empty queue with at least the given number of stripes
+    @SuppressWarnings("unchecked")
+    public ConcurrentRandomizedQueue(int minStripes) {
+        if (minStripes <= 0 || minStripes > 1 << 16) throw new IllegalArgumentException();
+        int nbStripes = Integer.highestOneBit(minStripes);
+        if (nbStripes < minStripes) nbStripes *= 2;
+        stripes = (Stripe<Item>[]) new Stripe<?>[nbStripes];
+        for (int i = 0; i < nbStripes; i++) {
+            stripes[i] = new Stripe<Item>();
+        }
+        mask = nbStripes - 1;
+    }
+
+    // is the queue empty? A snapshot only
+    public boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    // number of items, a snapshot only
+    public int size() {
+        return count.get();
+    }
+
+    // number of stripes
+    public int stripes() {
+        return stripes.length;
+    }
+
+    // add the item to the less loaded of two random stripes
+    public void enqueue(Item item) {
+        if (item == null) throw new IllegalArgumentException("Attempt to add null in deque");
+        Stripe<Item> target = null;
+        for (int attempt = 0; attempt < stripes.length && target == null; attempt++) {
+            Stripe<Item> first = stripes[random.nextInt(stripes.length)];
+            Stripe<Item> second = stripes[random.nextInt(stripes.length)];
+            if (second.size < first.size) {
+                Stripe<Item> swap = first;
+                first = second;
+                second = swap;
+            }
+            if (first.lock.tryLock()) target = first;
+            else if (second.lock.tryLock()) target = second;
+        }
+        if (target == null) {
+            // every pair was busy: wait for a random stripe
+            target = stripes[random.nextInt(stripes.length)];
+            target.lock.lock();
+        }
+        try {
+            target.items.enqueue(item);
+            target.size++;
+        }
+        finally {
+            target.lock.unlock();
+        }
+        count.incrementAndGet();           // only now may a dequeue count on the item
+    }
+
+    // remove and return a random item, null if the queue is empty
+    public Item poll() {
+        int n;
+        do {
+            n = count.get();
+            if (n == 0) return null;
+        } while (!count.compareAndSet(n, n - 1));
+
+        // an item is reserved for us, visit random stripes until one has an item
+        for (int misses = 1; ; misses++) {
+            Stripe<Item> stripe = stripes[random.nextInt(stripes.length)];
+            if (stripe.size == 0) {
+                if (misses % stripes.length == 0) Thread.yield();
+                continue;
+            }
+            stripe.lock.lock();
+            try {
+                if (stripe.size > 0) {
+                    stripe.size--;
+                    return stripe.items.dequeue();
+                }
+            }
+            finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    // remove and return a random item
+    public Item dequeue() {
+        Item item = poll();
+        if (item == null) throw new NoSuchElementException("Stack underflow");
+        return item;
+    }
+
+    // test client: every item comes out exactly once, and the first item
+    // dequeued is close to uniform
+    public static void main(String[] args) throws InterruptedException {
+        int nbStripes = Integer.parseInt(args[0]);
+        int nbThreads = Integer.parseInt(args[1]);
+        int perThread = 200000;
+        ConcurrentRandomizedQueue<Integer> queue =
+                new ConcurrentRandomizedQueue<Integer>(nbStripes);
+        AtomicInteger[] seen = new AtomicInteger[nbThreads * perThread];
+        for (int i = 0; i < seen.length; i++) {
+            seen[i] = new AtomicInteger();
+        }
+        Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    queue.enqueue(id * perThread + i);
+                    if (i % 2 == 1) seen[queue.dequeue()].incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        int smallest = Integer.MAX_VALUE;
+        int largest = 0;
+        for (Stripe<Integer> stripe : queue.stripes) {
+            smallest = Math.min(smallest, stripe.size);
+            largest = Math.max(largest, stripe.size);
+        }
+        StdOut.println(String.format("stripes %d: %d items left, stripe sizes in [%d, %d]",
+                                     queue.stripes(), queue.size(), smallest, largest));
+        for (Integer item = queue.poll(); item != null; item = queue.poll()) {
+            seen[item].incrementAndGet();
+        }
+        for (AtomicInteger s : seen) {
+            assert s.get() == 1 : "Item lost or duplicated";
+        }
+
+        int m = 64 * queue.stripes();
+        int trials = 20000;
+        int[] first = new int[m];
+        for (int trial = 0; trial < trials; trial++) {
+            ConcurrentRandomizedQueue<Integer> small =
+                    new ConcurrentRandomizedQueue<Integer>(nbStripes);
+            for (int i = 0; i < m; i++) small.enqueue(i);
+            first[small.dequeue()]++;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int c : first) {
+            min = Math.min(min, c);
+            max = Math.max(max, c);
+        }
+        StdOut.println(String.format("stripes %d: first item counts over %d trials in [%d, %d], "
+                                     + "expected %.1f", queue.stripes(), trials, min, max,
+                                     (double) trials / m));
+    }
+}
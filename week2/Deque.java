@@ -5,13 +5,34 @@
  *
  *  Doubly linked-list implementaion of a double-ended queue (deque).
  *
- *  Total memory usage for n items is 48*n + 40 bytes (without the content of an item).
+ *  Total memory usage for n items is 48*n + 56 bytes (without the content of an item),
+ *  plus 48 bytes per pooled node.
+ *
+ *  Iterators are fail-fast: every add and remove increments modCount, and an
+ *  iterator or spliterator that sees it change throws
+ *  ConcurrentModificationException. forEach() walks the nodes directly and
+ *  spliterator() splits the list for parallel streams by copying batches of
+ *  the front into arrays, as a linked list cannot be split in the middle
+ *  without walking to it.
+ *
+ *  Deque(maxPooledNodes) keeps up to maxPooledNodes removed nodes on a free
+ *  list, chained through their next field, and reuses them for later adds.
+ *  A deque whose size goes up and down then stops allocating once the pool
+ *  covers the swings, which keeps node churn out of the young generation.
+ *  Pooled nodes hold no item, so the pool never keeps an item reachable.
+ *  The default constructor does not pool.
  ******************************************************************************/
 
 import edu.princeton.cs.algs4.StdOut;
 
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
 
 /**
  * "implements Iterable<Item>" means that class Deque<Item> implements the Iterator interface
@@ -22,6 +43,10 @@ public class Deque<Item> implements Iterable<Item> {
     private int n;       // size of the deque
     private Node first;  // front of deque (head in queue terms)
     private Node last;   // back of deque (tail in queue terms)
+    private int modCount; // number of adds and removes, for fail-fast iteration
+    private Node free;    // pool of unused nodes, linked through next
+    private int nbFree;   // number of nodes in the pool
+    private final int maxFree; // maximum number of pooled nodes
 
     // helper linked list class
     // memory uasge for an object of this class is 48 bytes
@@ -36,6 +61,13 @@ public class Deque<Item> implements Iterable<Item> {
         first = null;
         last = null;
         n = 0;
+        maxFree = 0;
+    }
+
+    // construct an empty deque that recycles up to maxPooledNodes removed nodes
+    public Deque(int maxPooledNodes) {
+        if (maxPooledNodes < 0) throw new IllegalArgumentException();
+        maxFree = maxPooledNodes;
     }
 
     // is the deque empty?
@@ -52,50 +84,80 @@ public class Deque<Item> implements Iterable<Item> {
     public void addFirst(Item item) {
         if (item == null) throw new IllegalArgumentException("Attempt to add null in deque");
         Node oldFirst = first;
-        first = new Node();
+        first = newNode();
         first.item = item;
         first.next = oldFirst;
         first.previous = null;
         if (last == null) last = first;     // first and last hold referce to the same object now
         else oldFirst.previous = first;     // link oldFirst to first Node: first <-- oldFirst
         n++;
+        modCount++;
     }
 
     // add the item to the back (enqueue() for Queue)
     public void addLast(Item item) {
         if (item == null) throw new IllegalArgumentException("Attempt to add null in deque");
         Node oldLast = last;
-        last = new Node();
+        last = newNode();
         last.item = item;
         last.next = null;
         last.previous = oldLast;
         if (isEmpty()) first = last;        // first and last hold referce to the same object now
         else oldLast.next = last;           // link oldLast to last Node: oldLast --> last
         n++;
+        modCount++;
     }
 
     // remove and return the item from the front (common: dequeue() for Queue and pop() for Stack)
     public Item removeFirst() {
         if (isEmpty()) throw new NoSuchElementException("Stack underflow");
-        Item oldFirstItem = first.item;
+        Node oldFirst = first;
+        Item oldFirstItem = oldFirst.item;
         first = first.next;
         if (isEmpty()) last = null;          // avoid loitering: last is no longer needed
         else first.previous = null;          // avoid loitering
         n--;
+        modCount++;
+        recycle(oldFirst);
         return oldFirstItem;
     }
 
     // remove and return the item from the back (peculiar method not present in Queue and Stack)
     public Item removeLast() {
         if (isEmpty()) throw new NoSuchElementException("Stack underflow");
-        Item oldLastItem = last.item;
+        Node oldLast = last;
+        Item oldLastItem = oldLast.item;
         last = last.previous;
         if (last == null) first = null;     // avoid loitering: first is no longer needed
         else last.next = null;              // avoid loitering
         n--;
+        modCount++;
+        recycle(oldLast);
         return oldLastItem;
     }
 
+    // take a node from the pool, or allocate one if the pool is empty
+    private Node newNode() {
+        Node node = free;
+        if (node == null) return new Node();
+        free = node.next;
+        nbFree--;
+        return node;
+    }
+
+    // put a removed node back into the pool if there is room
+    private void recycle(Node node) {
+        node.item = null;                   // avoid loitering
+        node.previous = null;
+        if (nbFree == maxFree) {
+            node.next = null;
+            return;
+        }
+        node.next = free;
+        free = node;
+        nbFree++;
+    }
+
 
     // Return an iterator over items in order from front to back.
     // This is a concrete implementation of the method Iterator<Item>
@@ -104,10 +166,26 @@ public class Deque<Item> implements Iterable<Item> {
         return new ListIterator();
     }
 
+    // perform the action on every item from front to back, without an iterator
+    public void forEach(Consumer<? super Item> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for (Node x = first; x != null && modCount == expectedModCount; x = x.next) {
+            action.accept(x.item);
+        }
+        if (modCount != expectedModCount) throw new ConcurrentModificationException();
+    }
+
+    // sized, ordered spliterator over the items from front to back
+    public Spliterator<Item> spliterator() {
+        return new ListSpliterator();
+    }
+
     // This is a concrete implementation of the abstact class (interface)
     // Iterator<Item>
     private class ListIterator implements Iterator<Item> {
         private Node current = first;
+        private final int expectedModCount = modCount;
 
         // returns true if next() would return an element
         public boolean hasNext() {
@@ -115,6 +193,7 @@ public class Deque<Item> implements Iterable<Item> {
         }
 
         public Item next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
             if (!hasNext()) throw new NoSuchElementException();
             Item item = current.item;
             current = current.next;
@@ -127,6 +206,73 @@ public class Deque<Item> implements Iterable<Item> {
     }
 
 
+    // Walks the list from the front. trySplit() hands off the next batch of
+    // nodes as an array spliterator, with batches growing by BATCH_UNIT so that
+    // small lists stay sequential and large ones give the pool enough pieces.
+    // modCount is checked before every node is read: after a remove the node
+    // may already be recycled
+    private class ListSpliterator implements Spliterator<Item> {
+        private static final int BATCH_UNIT = 1 << 10;
+        private static final int MAX_BATCH = 1 << 25;
+
+        private Node current = first;
+        private int remaining = n;
+        private int batch;
+        private final int expectedModCount = modCount;
+
+        public Spliterator<Item> trySplit() {
+            checkForComodification();
+            if (remaining <= 1 || current == null) return null;
+            int size = Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), remaining);
+            Object[] items = new Object[size];
+            int j = 0;
+            for (; j < size && current != null; j++) {
+                items[j] = current.item;
+                current = current.next;
+            }
+            batch = j;
+            remaining -= j;
+            return Spliterators.spliterator(items, 0, j, characteristics());
+        }
+
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            Objects.requireNonNull(action);
+            checkForComodification();
+            if (current == null) return false;
+            Item item = current.item;
+            current = current.next;
+            remaining--;
+            action.accept(item);
+            return true;
+        }
+
+        public void forEachRemaining(Consumer<? super Item> action) {
+            Objects.requireNonNull(action);
+            Node x = current;
+            current = null;
+            remaining = 0;
+            for (; x != null; x = x.next) {
+                checkForComodification();
+                action.accept(x.item);
+            }
+            checkForComodification();
+        }
+
+        public long estimateSize() {
+            return remaining;
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+                    | Spliterator.NONNULL;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+        }
+    }
+
+
     public static void main(String[] args) {
         Deque<String> objDeque = new Deque<String>();
         assert objDeque.isEmpty() : "Not Empty";
@@ -155,6 +301,49 @@ public class Deque<Item> implements Iterable<Item> {
         }
         for (String s : objDeque)
             StdOut.println(s);
+
+        // forEach and streams see the same order as the iterator
+        StringBuilder joined = new StringBuilder();
+        objDeque.forEach(joined::append);
+        assert joined.toString().equals(testStringIterable) : "forEach out of order";
+
+        Deque<Integer> numbers = new Deque<Integer>();
+        for (int i = 0; i < 100000; i++) {
+            numbers.addLast(i);
+        }
+        long sum = StreamSupport.stream(numbers.spliterator(), true).mapToLong(i -> i).sum();
+        assert sum == 100000L * 99999 / 2 : "Parallel sum is wrong";
+        assert StreamSupport.stream(numbers.spliterator(), true).skip(500).findFirst().get() == 500
+                : "Parallel stream out of order";
+
+        boolean failed = false;
+        try {
+            for (Integer i : numbers) {
+                if (i == 10) numbers.removeLast();
+            }
+        }
+        catch (ConcurrentModificationException e) {
+            failed = true;
+        }
+        assert failed : "Iterator did not fail fast";
+
+        failed = false;
+        try {
+            numbers.spliterator().tryAdvance(null);
+        }
+        catch (NullPointerException e) {
+            failed = true;
+        }
+        assert failed : "Null action accepted";
+
+        // a pooled deque gives the same answers
+        Deque<Integer> pooled = new Deque<Integer>(4);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 10; i++) pooled.addLast(i);
+            for (int i = 0; i < 5; i++) assert pooled.removeFirst() == i : "Pooled removeFirst";
+            for (int i = 9; i >= 5; i--) assert pooled.removeLast() == i : "Pooled removeLast";
+            assert pooled.isEmpty() && pooled.nbFree == 4 : "Pool not bounded";
+        }
     }
 
 /*    private static void testSprint(boolean input, String testName) {
@@ -0,0 +1,291 @@
+/******************************************************************************
+ *  Compilation:  javac DequeBenchmark.java
+ *  Execution:    java DequeBenchmark n [maxThreads]
+ *
+ *  Micro-benchmarks of the deque implementations on n items. Each scenario
+ *  is run for a few warm-up rounds and then measured over several rounds;
+ *  the best round is reported in nanoseconds per operation.
+ *
+ *  Scenarios:
+ *  queue   - n x addLast, then n x removeFirst
+ *  stack   - n x addFirst, then n x removeFirst
+ *  mixed   - n rounds of addLast, addFirst, removeLast, removeFirst
+ *            on a deque of n / 2 items
+ *  pooled  - mixed on a Deque that recycles its nodes through a small pool
+ *  iterate - foreach over n items
+ *  ids     - queue of n int ids 0..n-1, boxed into Deque<Integer> versus IntDeque
+ *
+ *  With maxThreads, work-queue throughput is also measured for 1, 2, 4, ...
+ *  maxThreads threads (at most 32). All the work starts on one queue, as
+ *  when a single task spawns the rest: thread 0 produces n items per thread
+ *  and consumes one for every four it pushes, then drains what is left,
+ *  while the other threads take items from the other end:
+ *  locked   - a Deque behind a global lock
+ *  stealing - thread 0's WorkStealingDeque, the other threads steal() from
+ *             it; the share of the items that were stolen is reported
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DequeBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private static Integer[] items;   // boxed once, so that boxing is not measured
+    private static long sink;         // consumes results so the JIT cannot drop the work
+
+    // best time of the measured rounds in ns per operation
+    private static double measure(Runnable scenario, long ops) {
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            scenario.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) {
+            long start = System.nanoTime();
+            scenario.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / ops;
+    }
+
+    private static void report(String scenario, String name, double nsPerOp) {
+        StdOut.printf("%-8s %-10s %8.2f ns/op\n", scenario, name, nsPerOp);
+    }
+
+    private static void linkedQueue() {
+        Deque<Integer> deque = new Deque<Integer>();
+        for (Integer item : items) deque.addLast(item);
+        while (!deque.isEmpty()) sink += deque.removeFirst();
+    }
+
+    private static void arrayQueue() {
+        ResizingArrayDeque<Integer> deque = new ResizingArrayDeque<Integer>();
+        for (Integer item : items) deque.addLast(item);
+        while (!deque.isEmpty()) sink += deque.removeFirst();
+    }
+
+    private static void linkedStack() {
+        Deque<Integer> deque = new Deque<Integer>();
+        for (Integer item : items) deque.addFirst(item);
+        while (!deque.isEmpty()) sink += deque.removeFirst();
+    }
+
+    private static void arrayStack() {
+        ResizingArrayDeque<Integer> deque = new ResizingArrayDeque<Integer>();
+        for (Integer item : items) deque.addFirst(item);
+        while (!deque.isEmpty()) sink += deque.removeFirst();
+    }
+
+    private static void linkedMixed() {
+        Deque<Integer> deque = new Deque<Integer>();
+        for (int i = 0; i < items.length / 2; i++) deque.addLast(items[i]);
+        for (Integer item : items) {
+            deque.addLast(item);
+            deque.addFirst(item);
+            sink += deque.removeLast();
+            sink += deque.removeFirst();
+        }
+    }
+
+    private static void pooledMixed() {
+        Deque<Integer> deque = new Deque<Integer>(16);
+        for (int i = 0; i < items.length / 2; i++) deque.addLast(items[i]);
+        for (Integer item : items) {
+            deque.addLast(item);
+            deque.addFirst(item);
+            sink += deque.removeLast();
+            sink += deque.removeFirst();
+        }
+    }
+
+    private static void arrayMixed() {
+        ResizingArrayDeque<Integer> deque = new ResizingArrayDeque<Integer>();
+        for (int i = 0; i < items.length / 2; i++) deque.addLast(items[i]);
+        for (Integer item : items) {
+            deque.addLast(item);
+            deque.addFirst(item);
+            sink += deque.removeLast();
+            sink += deque.removeFirst();
+        }
+    }
+
+    private static void boxedIds(int n) {
+        Deque<Integer> deque = new Deque<Integer>();
+        for (int id = 0; id < n; id++) deque.addLast(id);
+        while (!deque.isEmpty()) sink += deque.removeFirst();
+    }
+
+    private static void primitiveIds(int n) {
+        IntDeque deque = new IntDeque();
+        for (int id = 0; id < n; id++) deque.addLast(id);
+        while (!deque.isEmpty()) sink += deque.removeFirst();
+    }
+
+    // one thread's share of a concurrent scenario
+    private interface Worker {
+        void run(int id);
+    }
+
+    // runs worker 0 .. nbThreads - 1 on their own threads, started together,
+    // and returns the elapsed wall time in ns
+    private static long inThreads(int nbThreads, Worker worker) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                worker.run(id);
+            });
+            threads[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - begin;
+    }
+
+    private static long locked(int nbThreads) throws InterruptedException {
+        Deque<Integer> deque = new Deque<Integer>();
+        Object lock = new Object();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        AtomicLong consumed = new AtomicLong();
+        long elapsed = inThreads(nbThreads, id -> {
+            long mine = 0;
+            if (id == 0) {
+                for (long i = 0; i < (long) nbThreads * items.length; i++) {
+                    synchronized (lock) {
+                        deque.addLast(items[(int) (i % items.length)]);
+                    }
+                    if (i % 4 == 3) {
+                        synchronized (lock) {
+                            if (!deque.isEmpty()) mine += deque.removeLast();
+                        }
+                    }
+                }
+                producing.set(false);
+            }
+            while (true) {
+                boolean done = !producing.get();
+                synchronized (lock) {
+                    if (!deque.isEmpty()) {
+                        mine += id == 0 ? deque.removeLast() : deque.removeFirst();
+                        continue;
+                    }
+                }
+                if (done) break;
+            }
+            consumed.addAndGet(mine);
+        });
+        sink += consumed.get();
+        return elapsed;
+    }
+
+    // elapsed ns, and the number of stolen items in stolen
+    private static long stealing(int nbThreads, AtomicLong stolen) throws InterruptedException {
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        AtomicLong consumed = new AtomicLong();
+        long elapsed = inThreads(nbThreads, id -> {
+            long mine = 0;
+            if (id == 0) {
+                for (long i = 0; i < (long) nbThreads * items.length; i++) {
+                    deque.push(items[(int) (i % items.length)]);
+                    if (i % 4 == 3) {
+                        Integer item = deque.pop();
+                        if (item != null) mine += item;
+                    }
+                }
+                producing.set(false);
+                for (Integer item = deque.pop(); item != null; item = deque.pop()) {
+                    mine += item;
+                }
+            }
+            else {
+                // once production is over and the deque is seen empty, only
+                // the owner can still hold items, and it drains them itself
+                long taken = 0;
+                while (true) {
+                    boolean done = !producing.get();
+                    Integer item = deque.steal();
+                    if (item != null) {
+                        mine += item;
+                        taken++;
+                    }
+                    else if (done && deque.isEmpty()) {
+                        break;
+                    }
+                }
+                stolen.addAndGet(taken);
+            }
+            consumed.addAndGet(mine);
+        });
+        sink += consumed.get();
+        return elapsed;
+    }
+
+    // items per second through each work queue for 1, 2, 4, ... maxThreads threads
+    private static void scaling(int maxThreads) throws InterruptedException {
+        locked(maxThreads);     // warm-up
+        stealing(maxThreads, new AtomicLong());
+        for (int t = 1; t <= maxThreads; t *= 2) {
+            double total = (double) t * items.length;
+            StdOut.printf("threads %2d %-10s %8.2f Mitems/s\n", t, "locked",
+                          total / locked(t) * 1e3);
+            AtomicLong stolen = new AtomicLong();
+            long elapsed = stealing(t, stolen);
+            StdOut.printf("threads %2d %-10s %8.2f Mitems/s  %5.1f%% stolen\n", t, "stealing",
+                          total / elapsed * 1e3, 100.0 * stolen.get() / total);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = Integer.parseInt(args[0]);
+        items = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = i;
+        }
+
+        report("queue", "linked", measure(DequeBenchmark::linkedQueue, 2L * n));
+        report("queue", "array", measure(DequeBenchmark::arrayQueue, 2L * n));
+        report("stack", "linked", measure(DequeBenchmark::linkedStack, 2L * n));
+        report("stack", "array", measure(DequeBenchmark::arrayStack, 2L * n));
+        report("mixed", "linked", measure(DequeBenchmark::linkedMixed, 4L * n));
+        report("mixed", "array", measure(DequeBenchmark::arrayMixed, 4L * n));
+        report("pooled", "linked", measure(DequeBenchmark::pooledMixed, 4L * n));
+
+        Deque<Integer> linked = new Deque<Integer>();
+        ResizingArrayDeque<Integer> array = new ResizingArrayDeque<Integer>();
+        for (Integer item : items) {
+            linked.addLast(item);
+            array.addLast(item);
+        }
+        report("iterate", "linked", measure(() -> {
+            for (Integer item : linked) sink += item;
+        }, n));
+        report("iterate", "array", measure(() -> {
+            for (Integer item : array) sink += item;
+        }, n));
+
+        report("ids", "boxed", measure(() -> boxedIds(n), 2L * n));
+        report("ids", "int", measure(() -> primitiveIds(n), 2L * n));
+
+        if (args.length > 1) {
+            scaling(Math.min(32, Integer.parseInt(args[1])));
+        }
+
+        StdOut.println(String.format("(checksum %d)", sink));
+    }
+}
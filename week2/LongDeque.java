@@ -0,0 +1,143 @@
+/******************************************************************************
+ *  Compilation:  javac LongDeque.java
+ *  Execution:    java LongDeque
+ *  To enable execution with assertions: java -ea LongDeque
+ *
+ *  Double-ended queue of long values, specialised from ResizingArrayDeque:
+ *  the values are stored in a circular long[] whose capacity is a power of
+ *  two, doubled when full and halved when one-quarter full. No value is ever
+ *  boxed and no memory is allocated per item.
+ *
+ *  iterator() returns a PrimitiveIterator.OfLong: nextLong() reads the values
+ *  without boxing, while next() (used by foreach) boxes them.
+ *
+ *  Total memory usage for n items is between 8*n and 32*n + 48 bytes.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class LongDeque implements Iterable<Long> {
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] a;        // circular array of values
+    private int first;      // index of the front value
+    private int n;          // size of the deque
+
+    // construct an empty deque
+    public LongDeque() {
+        a = new long[MIN_CAPACITY];
+        first = 0;
+        n = 0;
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    // return the number of values on the deque
+    public int size() {
+        return n;
+    }
+
+    // add the value to the front
+    public void addFirst(long value) {
+        if (n == a.length) resize(2 * a.length);
+        first = (first - 1) & (a.length - 1);
+        a[first] = value;
+        n++;
+    }
+
+    // add the value to the back
+    public void addLast(long value) {
+        if (n == a.length) resize(2 * a.length);
+        a[(first + n) & (a.length - 1)] = value;
+        n++;
+    }
+
+    // remove and return the value from the front
+    public long removeFirst() {
+        if (isEmpty()) throw new NoSuchElementException("Stack underflow");
+        long value = a[first];
+        first = (first + 1) & (a.length - 1);
+        n--;
+        shrinkIfSparse();
+        return value;
+    }
+
+    // remove and return the value from the back
+    public long removeLast() {
+        if (isEmpty()) throw new NoSuchElementException("Stack underflow");
+        long value = a[(first + n - 1) & (a.length - 1)];
+        n--;
+        shrinkIfSparse();
+        return value;
+    }
+
+    // halve the array once it is one-quarter full
+    private void shrinkIfSparse() {
+        if (a.length > MIN_CAPACITY && n == a.length / 4) resize(a.length / 2);
+    }
+
+    // move the values to a new array of the given capacity, front value at index 0
+    private void resize(int capacity) {
+        long[] copy = new long[capacity];
+        int head = Math.min(n, a.length - first);     // values before the wrap-around
+        System.arraycopy(a, first, copy, 0, head);
+        System.arraycopy(a, 0, copy, head, n - head);
+        a = copy;
+        first = 0;
+    }
+
+    // Return an iterator over values in order from front to back.
+    public PrimitiveIterator.OfLong iterator() {
+        return new ArrayIterator();
+    }
+
+    private class ArrayIterator implements PrimitiveIterator.OfLong {
+        private int i = 0;
+
+        // returns true if nextLong() would return a value
+        public boolean hasNext() {
+            return i < n;
+        }
+
+        public long nextLong() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return a[(first + i++) & (a.length - 1)];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static void main(String[] args) {
+        LongDeque deque = new LongDeque();
+        assert deque.isEmpty() : "Not Empty";
+
+        for (int i = 0; i < 100; i++) {
+            if (i % 2 == 0) deque.addFirst(i);
+            else deque.addLast(i);
+        }
+        assert deque.size() == 100 : "Size not 100";
+        assert deque.removeFirst() == 98 : "Wrong front";
+        assert deque.removeLast() == 99 : "Wrong back";
+
+        long sum = 0;
+        PrimitiveIterator.OfLong it = deque.iterator();
+        while (it.hasNext()) {
+            sum += it.nextLong();
+        }
+        assert sum == 4950 - 98 - 99 : "Wrong sum";
+
+        while (deque.size() > 2) {
+            deque.removeFirst();
+        }
+        StdOut.println(deque.removeFirst() + " " + deque.removeLast());
+        assert deque.isEmpty() : "Not Empty";
+    }
+}
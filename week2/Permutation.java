@@ -1,32 +1,174 @@
 /******************************************************************************
  *  Compilation:  javac Permutation.java
  *  Execution:    java Permutation 3 < file.txt
+ *                java Permutation 3 file.txt [weighted]
+ *                java Permutation 3 - [weighted] < file.txt
+ *                java Permutation 3 directory [threads] [weighted]
  *
  * The sized of RandomizedQueue object is determined from the command line argument k.
  * For that, Reservoir sampling with Algorithm R is added.
+ * The reservoir step and the queue draw from the same thread-local generator.
+ *
+ * With a file argument (- for standard input) the tokens are read by a
+ * ByteTokenizer and sampled by ReservoirSampler (Algorithm L): the random
+ * draws are only spent on the gaps between kept tokens, and only kept tokens
+ * become Strings. With weighted the input is a sequence of "weight token"
+ * pairs, sampled by WeightedReservoirSampler (A-ExpJ).
+ *
+ * With a directory every regular file in it is a shard. The shards are
+ * sampled in parallel by a pool of threads (one per core by default) and
+ * their reservoirs are merged: uniform samples with the counts of the
+ * shards, weighted samples by their keys. The result has the distribution
+ * of a single sample of the concatenated files.
  ******************************************************************************/
 
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
-import edu.princeton.cs.algs4.StdRandom;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Permutation {
-    public static void main(String[] args) {
+
+    // Algorithm L over the tokens
+    private static ReservoirSampler<String> uniformSample(ByteTokenizer in, int k,
+                                                         RandomSource random)
+            throws IOException {
+        ReservoirSampler<String> sampler = new ReservoirSampler<String>(k, random);
+        while (in.hasNext()) {
+            if (sampler.next()) sampler.keep(in.next());
+            else in.skip();
+        }
+        return sampler;
+    }
+
+    // A-ExpJ over "weight token" pairs
+    private static WeightedReservoirSampler<String> weightedSample(ByteTokenizer in, int k,
+                                                                   RandomSource random)
+            throws IOException {
+        WeightedReservoirSampler<String> sampler = new WeightedReservoirSampler<String>(k, random);
+        while (in.hasNext()) {
+            double weight = in.nextDouble();
+            if (!in.hasNext()) throw new InputMismatchException("Weight without a token");
+            if (sampler.next(weight)) sampler.keep(in.next());
+            else in.skip();
+        }
+        return sampler;
+    }
+
+    // samples every regular file of the directory on a pool of threads and
+    // merges the shard samples
+    private static List<String> shardedSample(Path directory, int k, int threads,
+                                              boolean weighted, RandomSource random)
+            throws IOException {
+        List<Path> files;
+        try (Stream<Path> entries = Files.list(directory)) {
+            files = entries.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        if (files.isEmpty()) return new ArrayList<String>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        try {
+            List<Future<Object>> running = new ArrayList<Future<Object>>(files.size());
+            for (Path file : files) {
+                running.add(pool.submit(() -> {
+                    // each worker draws from its own thread's generator
+                    try (ByteTokenizer in = ByteTokenizer.open(file)) {
+                        RandomSource local = RandomSource.threadLocal();
+                        return weighted ? weightedSample(in, k, local)
+                                        : uniformSample(in, k, local);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            List<ReservoirSampler<String>> uniform = new ArrayList<ReservoirSampler<String>>();
+            List<WeightedReservoirSampler<String>> byWeight =
+                    new ArrayList<WeightedReservoirSampler<String>>();
+            for (Future<Object> future : running) {
+                Object shard = future.get();
+                if (weighted) byWeight.add((WeightedReservoirSampler<String>) shard);
+                else uniform.add((ReservoirSampler<String>) shard);
+            }
+            return weighted ? WeightedReservoirSampler.merge(byWeight)
+                            : ReservoirSampler.merge(uniform, random);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sampling", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException("Shard failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
         // Input
         // k - number of string to read from the STDIN (in fact, the redirected file)
-        RandomizedQueue<String> objRQ = new RandomizedQueue<String>();
+        // file (optional) - file to sample with Algorithm L, - for STDIN
+        // directory (optional) - instead of a file, sample every file in it
+        // threads (optional) - number of threads for a directory, defaults to all cores
+        // weighted (optional) - the input holds "weight token" pairs
+        RandomSource random = RandomSource.threadLocal();
+        RandomizedQueue<String> objRQ = new RandomizedQueue<String>(random);
         int k = Integer.parseInt(args[0]);
-        int counter = 1;
-        // implement Reservoir sampling with Algorithm R
-        while (!StdIn.isEmpty()) {
-            String item = StdIn.readString();
-            if (objRQ.size() < k)
-                objRQ.enqueue(item);
-            else {
-                int j = StdRandom.uniform(k + counter++);
-                if (j < k) {
-                    objRQ.dequeue();
+        if (args.length > 1) {
+            boolean weighted = args[args.length - 1].equals("weighted");
+            if (k > 0) {
+                List<String> sample;
+                if (Files.isDirectory(Paths.get(args[1]))) {
+                    int threads = args.length > 2 && !args[2].equals("weighted")
+                            ? Integer.parseInt(args[2])
+                            : Runtime.getRuntime().availableProcessors();
+                    if (threads <= 0) throw new IllegalArgumentException();
+                    sample = shardedSample(Paths.get(args[1]), k, threads, weighted, random);
+                }
+                else {
+                    try (ByteTokenizer in = args[1].equals("-")
+                            ? new ByteTokenizer(Channels.newChannel(System.in))
+                            : ByteTokenizer.open(Paths.get(args[1]))) {
+                        sample = weighted ? weightedSample(in, k, random).sample()
+                                          : uniformSample(in, k, random).sample();
+                    }
+                }
+                for (String s : sample) {
+                    objRQ.enqueue(s);
+                }
+            }
+        }
+        else {
+            int counter = 1;
+            // implement Reservoir sampling with Algorithm R
+            while (!StdIn.isEmpty()) {
+                String item = StdIn.readString();
+                if (objRQ.size() < k)
                     objRQ.enqueue(item);
+                else {
+                    int j = random.nextInt(k + counter++);
+                    if (j < k) {
+                        objRQ.dequeue();
+                        objRQ.enqueue(item);
+                    }
                 }
             }
         }
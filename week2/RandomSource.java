@@ -0,0 +1,70 @@
+/******************************************************************************
+ *  Compilation:  javac RandomSource.java
+ *
+ *  Source of random bits for RandomizedQueue and its clients. The only
+ *  method to implement is nextLong(), so a SplittableRandom, a
+ *  ThreadLocalRandom or any other generator plugs in as random::nextLong.
+ *
+ *  nextInt(bound) maps 32 random bits x to floor(x * bound / 2^32) with one
+ *  multiplication (Lemire, "Fast Random Integer Generation in an Interval",
+ *  2019). The few x that would make some results more likely than others
+ *  are rejected and drawn again. The threshold that identifies them needs a
+ *  division, but it is only computed on the rare draws that may need it.
+ ******************************************************************************/
+
+import java.util.SplittableRandom;
+
+public interface RandomSource {
+
+    // 64 uniformly random bits
+    long nextLong();
+
+    // uniformly random int in [0, bound), bound > 0
+    default int nextInt(int bound) {
+        if (bound <= 0) throw new IllegalArgumentException();
+        long m = (nextLong() >>> 32) * bound;
+        int low = (int) m;
+        if (Integer.compareUnsigned(low, bound) < 0) {
+            int threshold = Integer.remainderUnsigned(-bound, bound);   // 2^32 mod bound
+            while (Integer.compareUnsigned(low, threshold) < 0) {
+                m = (nextLong() >>> 32) * bound;
+                low = (int) m;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    // uniformly random long in [0, bound), bound > 0. Draws falling in the
+    // incomplete last multiple of bound are rejected
+    default long nextLong(long bound) {
+        if (bound <= 0) throw new IllegalArgumentException();
+        long bits;
+        long value;
+        do {
+            bits = nextLong() >>> 1;
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);
+        return value;
+    }
+
+    // uniformly random double in [0, 1), a multiple of 2^-53
+    default double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    // xoshiro256** generator of the calling thread, safe to share between threads
+    static RandomSource threadLocal() {
+        return () -> Xoshiro256.current().nextLong();
+    }
+
+    // deterministic xoshiro256** generator, for one thread at a time
+    static RandomSource seeded(long seed) {
+        return new Xoshiro256(seed);
+    }
+
+    // draws from the given SplittableRandom, for one thread at a time
+    static RandomSource of(SplittableRandom random) {
+        if (random == null) throw new IllegalArgumentException();
+        return random::nextLong;
+    }
+}
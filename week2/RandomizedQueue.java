@@ -3,20 +3,64 @@
  *  Execution with assetrions:    java -ea RandomizedQueue
  *
  *  Array based implementation of the randomized queue.
+ *
+ *  Random choices come from a RandomSource given to the constructor, by
+ *  default the xoshiro256** generator of the calling thread. A seeded source
+ *  makes a queue deterministic. A thread-local one lets queues used by
+ *  different threads draw without contending on a shared generator.
+ *
+ *  dequeue(k, out) and sample(k, withReplacement, out) fetch k items in one
+ *  call with a partial Fisher-Yates shuffle: step i swaps a random one of
+ *  the first n - i items into position n - 1 - i. dequeue(k, out) then cuts
+ *  those k positions off and shrinks the array at most once. sample() without
+ *  replacement swaps the items back afterwards, so open iterators are not
+ *  disturbed.
+ *
+ *  Iterators are fail-fast: enqueue and dequeue increment modCount, and an
+ *  iterator or spliterator that sees it change throws
+ *  ConcurrentModificationException. forEach() visits the items in random order
+ *  without an iterator, and spliterator() splits its random order in halves
+ *  for parallel streams.
+ *
+ *  The random order is a Shuffle: a function from positions to indices that
+ *  costs O(1) to create and O(1) expected per position, so an iterator that
+ *  stops after a few items does not pay for shuffling all of them.
+ *  - up to SMALL items it is an exactly uniform Fisher-Yates shuffle of an
+ *    index array of at most SMALL entries;
+ *  - above that it is a 6-round Feistel network with random round keys on
+ *    the 2h-bit integers, 4^h the smallest even power of two >= n, so fewer
+ *    than 4n. Positions it maps to n or above are mapped again (cycle
+ *    walking) until they land in [0, n), fewer than 4 rounds of mapping on
+ *    average. This gives a pseudorandom permutation keyed by six random
+ *    round keys rather than an exactly uniform one.
  ******************************************************************************/
 
 import edu.princeton.cs.algs4.StdOut;
-import edu.princeton.cs.algs4.StdRandom;
 
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
 
 public class RandomizedQueue<Item> implements Iterable<Item> {
     private Item[] a;         // array of items
     private int idtail;       // index of the first null item
+    private int modCount;     // number of enqueues and dequeues, for fail-fast iteration
+    private final RandomSource random;
 
-    // construct an empty randomized queue
+    // construct an empty randomized queue drawing from the thread's generator
     public RandomizedQueue() {
+        this(RandomSource.threadLocal());
+    }
+
+    // construct an empty randomized queue drawing from the given source
+    public RandomizedQueue(RandomSource random) {
+        if (random == null) throw new IllegalArgumentException();
+        this.random = random;
         a = (Item[]) new Object[1];
         idtail = 0;
     }
@@ -37,6 +81,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (idtail == a.length)
             resize(2 * a.length);     // double size of array if cannot fit another item
         a[idtail++] = item;           // add item and then increment tail
+        modCount++;
     }
 
     // remove and return a random item
@@ -46,6 +91,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         Item randOutput = a[idrand];
         a[idrand] = a[--idtail];         // decrease idtail and use it as index
         a[idtail] = null;                // avoid loitering
+        modCount++;
         if (idtail > 0 && idtail == a.length / 4)
             resize(a.length / 2);     // shirnk size of the array
         return randOutput;
@@ -57,17 +103,67 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         return a[getRandomIndex()];
     }
 
+    // remove k random items into out[0, k)
+    public void dequeue(int k, Item[] out) {
+        if (k < 0 || out == null || out.length < k) throw new IllegalArgumentException();
+        if (k > idtail) throw new NoSuchElementException("Stack underflow");
+        for (int i = 0; i < k; i++) {
+            int last = idtail - 1 - i;
+            int idrand = random.nextInt(last + 1);
+            out[i] = a[idrand];
+            a[idrand] = a[last];
+            a[last] = null;                  // avoid loitering
+        }
+        idtail -= k;
+        modCount++;
+        int capacity = a.length;
+        while (idtail > 0 && idtail <= capacity / 4) {
+            capacity /= 2;
+        }
+        if (capacity < a.length) resize(capacity);
+    }
+
+    // copy k random items into out[0, k) without removing them, distinct
+    // items unless withReplacement
+    public void sample(int k, boolean withReplacement, Item[] out) {
+        if (k < 0 || out == null || out.length < k) throw new IllegalArgumentException();
+        if (k > 0 && isEmpty()) throw new NoSuchElementException("Stack underflow");
+        if (withReplacement) {
+            for (int i = 0; i < k; i++) {
+                out[i] = a[getRandomIndex()];
+            }
+            return;
+        }
+        if (k > idtail) throw new NoSuchElementException("Stack underflow");
+        int[] swapped = new int[k];
+        for (int i = 0; i < k; i++) {
+            int last = idtail - 1 - i;
+            int idrand = random.nextInt(last + 1);
+            swapped[i] = idrand;
+            swap(idrand, last);
+            out[i] = a[last];
+        }
+        // undo the swaps in reverse order to restore the array
+        for (int i = k - 1; i >= 0; i--) {
+            swap(swapped[i], idtail - 1 - i);
+        }
+    }
+
+    private void swap(int i, int j) {
+        Item temp = a[i];
+        a[i] = a[j];
+        a[j] = temp;
+    }
+
     // return a random index from [0, tail)
     private int getRandomIndex() {
-        return StdRandom.uniform(size());
+        return random.nextInt(size());
     }
 
     // resize the underlying array holding the elements
     private void resize(int capacity) {
         Item[] copy = (Item[]) new Object[capacity];
-        for (int i = 0; i < idtail; i++) {
-            copy[i] = a[i];
-        }
+        System.arraycopy(a, 0, copy, 0, idtail);
         a = copy;
     }
 
@@ -75,28 +171,110 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         return new ListIterator();
     }
 
+    // perform the action on every item in uniformly random order, without an iterator
+    public void forEach(Consumer<? super Item> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        int n = idtail;
+        Shuffle order = new Shuffle(n, random);
+        for (int i = 0; i < n && modCount == expectedModCount; i++) {
+            action.accept(a[order.index(i)]);
+        }
+        if (modCount != expectedModCount) throw new ConcurrentModificationException();
+    }
+
+    // sized spliterator over the items in uniformly random order
+    public Spliterator<Item> spliterator() {
+        return new RandomSpliterator(new Shuffle(idtail, random), 0, idtail, modCount);
+    }
+
+    // random permutation of [0, n), evaluated one position at a time
+    private static final class Shuffle {
+        private static final int SMALL = 256;
+        private static final int ROUNDS = 6;
+
+        private final int n;
+        private final int[] order;     // the permutation itself, n <= SMALL only
+        private final int half;        // bits per Feistel half
+        private final int mask;        // (1 << half) - 1
+        private final int[] keys;      // one key per round
+
+        private Shuffle(int n, RandomSource random) {
+            this.n = n;
+            if (n <= SMALL) {
+                // filled and shuffled in one pass (inside-out Fisher-Yates)
+                order = new int[n];
+                for (int i = 0; i < n; i++) {
+                    int j = random.nextInt(i + 1);
+                    order[i] = order[j];
+                    order[j] = i;
+                }
+                half = 0;
+                mask = 0;
+                keys = null;
+                return;
+            }
+            order = null;
+            int bits = 32 - Integer.numberOfLeadingZeros(n - 1);
+            half = (bits + 1) / 2;
+            mask = (1 << half) - 1;
+            keys = new int[ROUNDS];
+            for (int r = 0; r < ROUNDS; r++) {
+                keys[r] = (int) random.nextLong();
+            }
+        }
+
+        // index of the item at position i, 0 <= i < n
+        private int index(int i) {
+            if (order != null) return order[i];
+            long x = i;
+            do {
+                x = permute(x);
+            } while (x >= n);
+            return (int) x;
+        }
+
+        // one pass of the Feistel network over [0, 4^half)
+        private long permute(long x) {
+            int left = (int) (x >>> half);
+            int right = (int) x & mask;
+            for (int r = 0; r < ROUNDS; r++) {
+                int swap = right;
+                right = left ^ (mix(right ^ keys[r]) & mask);
+                left = swap;
+            }
+            return ((long) left << half) | right;
+        }
+
+        // round function: 32-bit finaliser of MurmurHash3
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            h *= 0xC2B2AE35;
+            h ^= h >>> 16;
+            return h;
+        }
+    }
+
     // This is a concrete implementation of the abstact class (interface)
     // Iterator<Item>
     private class ListIterator implements Iterator<Item> {
         private int id = 0;
         // final fields can be changed only upon initialization, i.e. in constructor
-        private final int[] shuffledIndices = new int[idtail];
-
-        private ListIterator() {
-            for (int i = 0; i < idtail; i++) {
-                shuffledIndices[i] = i;
-            }
-            StdRandom.shuffle(shuffledIndices);
-        }
+        private final int n = idtail;
+        private final Shuffle order = new Shuffle(n, random);
+        private final int expectedModCount = modCount;
 
         // returns true if next() would return an element
         public boolean hasNext() {
-            return id < idtail;
+            return id < n;
         }
 
         public Item next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
             if (!hasNext()) throw new NoSuchElementException();
-            return a[shuffledIndices[id++]];
+            return a[order.index(id++)];
         }
 
         public void remove() {
@@ -104,6 +282,62 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         }
     }
 
+    // Walks positions [index, fence) of the shuffle. The order is already
+    // random, so trySplit() simply hands off the first half. modCount is
+    // checked before every slot is read, so a modification is never delivered
+    private class RandomSpliterator implements Spliterator<Item> {
+        private final Shuffle order;
+        private int index;
+        private final int fence;
+        private final int expectedModCount;
+
+        private RandomSpliterator(Shuffle order, int index, int fence, int expectedModCount) {
+            this.order = order;
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        public Spliterator<Item> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid <= index) return null;
+            RandomSpliterator prefix = new RandomSpliterator(order, index, mid, expectedModCount);
+            index = mid;
+            return prefix;
+        }
+
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            Objects.requireNonNull(action);
+            checkForComodification();
+            if (index >= fence) return false;
+            action.accept(a[order.index(index++)]);
+            return true;
+        }
+
+        public void forEachRemaining(Consumer<? super Item> action) {
+            Objects.requireNonNull(action);
+            int i = index;
+            index = fence;
+            for (; i < fence; i++) {
+                checkForComodification();
+                action.accept(a[order.index(i)]);
+            }
+            checkForComodification();
+        }
+
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+        }
+    }
+
     // unit testing (required)
     public static void main(String[] args) {
         RandomizedQueue<String> objRQueue = new RandomizedQueue<String>();
@@ -133,5 +367,103 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         StdOut.println("    ");
         for (String s : objRQueueTest2)
             StdOut.println(s);
+
+        // forEach and parallel streams see every item exactly once
+        StringBuilder joined = new StringBuilder();
+        objRQueueTest2.forEach(joined::append);
+        char[] sorted = joined.toString().toCharArray();
+        Arrays.sort(sorted);
+        assert new String(sorted).equals("ABEILRT") : "forEach lost an item";
+
+        RandomizedQueue<Integer> numbers = new RandomizedQueue<Integer>();
+        for (int i = 0; i < 100000; i++) {
+            numbers.enqueue(i);
+        }
+        long sum = StreamSupport.stream(numbers.spliterator(), true).mapToLong(i -> i).sum();
+        assert sum == 100000L * 99999 / 2 : "Parallel sum is wrong";
+        assert StreamSupport.stream(numbers.spliterator(), true).distinct().count() == 100000
+                : "Parallel stream repeated an item";
+
+        boolean failed = false;
+        try {
+            for (Integer i : numbers) {
+                numbers.dequeue();
+            }
+        }
+        catch (ConcurrentModificationException e) {
+            failed = true;
+        }
+        assert failed : "Iterator did not fail fast";
+
+        // a spliterator checks for modification before it reads the next item
+        Spliterator<Integer> split = numbers.spliterator();
+        split.tryAdvance(i -> { });
+        numbers.enqueue(-1);
+        boolean[] delivered = new boolean[1];
+        failed = false;
+        try {
+            split.tryAdvance(i -> delivered[0] = true);
+        }
+        catch (ConcurrentModificationException e) {
+            failed = true;
+        }
+        assert failed && !delivered[0] : "Spliterator delivered after a modification";
+
+        failed = false;
+        try {
+            numbers.forEach(null);
+        }
+        catch (NullPointerException e) {
+            failed = true;
+        }
+        assert failed : "Null action accepted";
+
+        // queues with the same seed make the same choices
+        RandomizedQueue<Integer> left = new RandomizedQueue<Integer>(RandomSource.seeded(42));
+        RandomizedQueue<Integer> right = new RandomizedQueue<Integer>(RandomSource.seeded(42));
+        for (int i = 0; i < 1000; i++) {
+            left.enqueue(i);
+            right.enqueue(i);
+        }
+        while (!left.isEmpty()) {
+            assert left.dequeue().equals(right.dequeue()) : "Seeded queues diverged";
+        }
+
+        // batches: distinct items, the queue unchanged by sample()
+        RandomizedQueue<Integer> batch = new RandomizedQueue<Integer>(RandomSource.seeded(7));
+        for (int i = 0; i < 1000; i++) {
+            batch.enqueue(i);
+        }
+        Integer[] out = new Integer[900];
+        Iterator<Integer> open = batch.iterator();
+        batch.sample(900, false, out);
+        assert Arrays.stream(out).distinct().count() == 900 : "Sample repeated an item";
+        int visited = 0;
+        while (open.hasNext()) {
+            open.next();
+            visited++;
+        }
+        assert visited == 1000 : "sample() disturbed an iterator";
+        batch.sample(900, true, out);
+
+        batch.dequeue(900, out);
+        assert Arrays.stream(out).distinct().count() == 900 : "Dequeue repeated an item";
+        Object[] backing = batch.a;
+        assert batch.size() == 100 && backing.length == 256 : "Batch did not shrink";
+        long total = 0;
+        for (int i : batch) total += i;
+        for (int i = 0; i < 900; i++) total += out[i];
+        assert total == 1000 * 999 / 2 : "Batch lost an item";
+
+        // the Feistel shuffle is a permutation
+        for (int n : new int[] { 257, 1000, 4096, 100003 }) {
+            Shuffle order = new Shuffle(n, RandomSource.seeded(n));
+            boolean[] seen = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                int id = order.index(i);
+                assert !seen[id] : "Shuffle repeated an index";
+                seen[id] = true;
+            }
+        }
     }
 }
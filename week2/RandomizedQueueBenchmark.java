@@ -0,0 +1,182 @@
+/******************************************************************************
+ *  Compilation:  javac RandomizedQueueBenchmark.java
+ *  Execution:    java RandomizedQueueBenchmark n [maxThreads]
+ *
+ *  Throughput of RandomizedQueue with each kind of RandomSource. Every thread
+ *  owns a queue of n items, so the only thing the threads can share is the
+ *  generator:
+ *  shared      - one java.util.Random for all threads, as with StdRandom
+ *  xoshiro     - RandomSource.threadLocal()
+ *  splittable  - one SplittableRandom per thread, split from a common root
+ *  tlr         - ThreadLocalRandom
+ *
+ *  Scenarios, reported in millions of operations per second over all threads:
+ *  dequeue - n x enqueue, then n x dequeue
+ *  sample  - n x enqueue, then n x sample
+ *
+ *  Each measurement is the best of a few rounds after warm-up, for 1, 2,
+ *  4, ... maxThreads threads (1 thread by default).
+ *
+ *  The threads then share one queue, prefilled with n items, and each does
+ *  n rounds of enqueue and dequeue:
+ *  locked  - a RandomizedQueue behind one lock
+ *  striped - a ConcurrentRandomizedQueue
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+public class RandomizedQueueBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    private static Integer[] items;   // boxed once, so that boxing is not measured
+    private static long sink;         // consumes results so the JIT cannot drop the work
+
+    // one thread's share of a scenario, given the thread's random source
+    private interface Scenario {
+        long run(RandomSource random);
+    }
+
+    private static long dequeue(RandomSource random) {
+        RandomizedQueue<Integer> queue = new RandomizedQueue<Integer>(random);
+        for (Integer item : items) queue.enqueue(item);
+        long sum = 0;
+        while (!queue.isEmpty()) sum += queue.dequeue();
+        return sum;
+    }
+
+    private static long sample(RandomSource random) {
+        RandomizedQueue<Integer> queue = new RandomizedQueue<Integer>(random);
+        for (Integer item : items) queue.enqueue(item);
+        long sum = 0;
+        for (int i = 0; i < items.length; i++) sum += queue.sample();
+        return sum;
+    }
+
+    // runs the scenario on nbThreads threads started together, thread t
+    // drawing from sources.apply(t), and returns the elapsed wall time in ns
+    private static long inThreads(int nbThreads, IntFunction<RandomSource> sources,
+                                  Scenario scenario) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong total = new AtomicLong();
+        Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            RandomSource random = sources.apply(t);
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                total.addAndGet(scenario.run(random));
+            });
+            threads[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        sink += total.get();
+        return elapsed;
+    }
+
+    // one thread's share of the shared-queue scenario
+    private static long churn(Object lock, RandomizedQueue<Integer> locked,
+                              ConcurrentRandomizedQueue<Integer> striped) {
+        long sum = 0;
+        for (Integer item : items) {
+            if (striped != null) {
+                striped.enqueue(item);
+                sum += striped.dequeue();
+            }
+            else {
+                synchronized (lock) {
+                    locked.enqueue(item);
+                }
+                synchronized (lock) {
+                    sum += locked.dequeue();
+                }
+            }
+        }
+        return sum;
+    }
+
+    // Mops/s of nbThreads threads churning one shared queue, best of the rounds
+    private static double shared(int nbThreads, boolean striped) throws InterruptedException {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < WARMUP_ROUNDS + ROUNDS; r++) {
+            Object lock = new Object();
+            RandomizedQueue<Integer> locked = new RandomizedQueue<Integer>();
+            ConcurrentRandomizedQueue<Integer> concurrent = new ConcurrentRandomizedQueue<Integer>();
+            for (Integer item : items) {
+                if (striped) concurrent.enqueue(item);
+                else locked.enqueue(item);
+            }
+            long elapsed = inThreads(nbThreads, t -> null,
+                                     random -> churn(lock, locked, striped ? concurrent : null));
+            if (r >= WARMUP_ROUNDS) best = Math.min(best, elapsed);
+        }
+        return 2.0 * nbThreads * items.length / best * 1e3;
+    }
+
+    // best of the measured rounds in millions of operations per second
+    private static double measure(int nbThreads, IntFunction<RandomSource> sources,
+                                  Scenario scenario, long opsPerThread)
+            throws InterruptedException {
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            inThreads(nbThreads, sources, scenario);
+        }
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) {
+            best = Math.min(best, inThreads(nbThreads, sources, scenario));
+        }
+        return (double) nbThreads * opsPerThread / best * 1e3;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = Integer.parseInt(args[0]);
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        items = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = i;
+        }
+
+        Random shared = new Random();
+        SplittableRandom root = new SplittableRandom();
+        String[] names = { "shared", "xoshiro", "splittable", "tlr" };
+        List<IntFunction<RandomSource>> sources = Arrays.asList(
+            t -> shared::nextLong,
+            t -> RandomSource.threadLocal(),
+            t -> RandomSource.of(root.split()),
+            t -> () -> ThreadLocalRandom.current().nextLong()
+        );
+
+        for (int t = 1; t <= maxThreads; t *= 2) {
+            for (int s = 0; s < sources.size(); s++) {
+                IntFunction<RandomSource> source = sources.get(s);
+                double dequeues = measure(t, source, RandomizedQueueBenchmark::dequeue, 2L * n);
+                double samples = measure(t, source, RandomizedQueueBenchmark::sample, 2L * n);
+                StdOut.printf("threads %2d %-10s dequeue %8.2f Mops/s  sample %8.2f Mops/s\n",
+                              t, names[s], dequeues, samples);
+            }
+        }
+        for (int t = 1; t <= maxThreads; t *= 2) {
+            StdOut.printf("threads %2d shared     locked  %8.2f Mops/s  striped %8.2f Mops/s\n",
+                          t, shared(t, false), shared(t, true));
+        }
+        StdOut.println(String.format("(checksum %d)", sink));
+    }
+}
@@ -0,0 +1,209 @@
+/******************************************************************************
+ *  Compilation:  javac ReservoirSampler.java
+ *  Execution:    java -ea ReservoirSampler
+ *
+ *  Uniform sample of k items from a stream of unknown length, with Li's
+ *  Algorithm L ("Reservoir-Sampling Algorithms of Time Complexity
+ *  O(n(1 + log(N/n)))", 1994).
+ *
+ *  Algorithm R draws one random number per item. Algorithm L instead draws
+ *  the length of the gap to the next item that enters the reservoir, from a
+ *  geometric distribution, so a stream of N items costs
+ *  O(k (1 + log(N / k))) random draws.
+ *
+ *  The caller asks before it builds an item: next() consumes one position of
+ *  the stream and says whether the item there is kept, and only then does
+ *  the caller build it and pass it to keep(). Items that are skipped never
+ *  need to exist, e.g. a tokenizer can step over their bytes.
+ *
+ *  Samplers of disjoint streams (shards) merge into a uniform sample of the
+ *  union. The merge first splits k between the shards as k draws without
+ *  replacement from the N = N_1 + ... + N_s positions (a multivariate
+ *  hypergeometric draw), then takes that many items from each shard's
+ *  reservoir by a partial Fisher-Yates shuffle. A uniform subset of a
+ *  uniform sample of a shard is a uniform sample of the shard, so every
+ *  k-subset of the union is equally likely.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ReservoirSampler<Item> {
+    private final Item[] reservoir;
+    private final RandomSource random;
+    private int size;         // items in the reservoir, at most k
+    private long count;       // positions consumed by next()
+    private long nextKept;    // position of the next item to keep
+    private double logW;      // log of Algorithm L's W
+    private boolean pending;  // next() said keep, keep() not called yet
+
+    // construct an empty sampler of k items
+    public ReservoirSampler(int k, RandomSource random) {
+        if (k <= 0 || random == null) throw new IllegalArgumentException();
+        this.reservoir = (Item[]) new Object[k];
+        this.random = random;
+        nextKept = 0;
+    }
+
+    // consume the next position of the stream, true if its item must be
+    // passed to keep()
+    public boolean next() {
+        if (pending) throw new IllegalStateException("keep() not called");
+        long position = count++;
+        if (position < nextKept) return false;
+        pending = true;
+        return true;
+    }
+
+    // store the item of the position for which next() returned true
+    public void keep(Item item) {
+        if (!pending) throw new IllegalStateException("next() did not ask for an item");
+        if (item == null) throw new IllegalArgumentException();
+        pending = false;
+        int k = reservoir.length;
+        if (size < k) {
+            reservoir[size++] = item;
+            if (size == k) {
+                logW = logUniform() / k;
+                skip();
+            }
+            else {
+                nextKept = count;
+            }
+            return;
+        }
+        reservoir[random.nextInt(k)] = item;
+        logW += logUniform() / k;
+        skip();
+    }
+
+    // offer an item the caller already has: next() and keep() in one call
+    public void offer(Item item) {
+        if (next()) keep(item);
+    }
+
+    // number of positions consumed
+    public long count() {
+        return count;
+    }
+
+    // number of items in the reservoir, min(k, count())
+    public int size() {
+        return size;
+    }
+
+    // copy of the reservoir, in no particular order
+    public List<Item> sample() {
+        return new ArrayList<Item>(Arrays.asList(reservoir).subList(0, size));
+    }
+
+    // uniform sample of min(k, N) items of the union of the shards' streams,
+    // k the smallest reservoir size of the shards and N the sum of their
+    // counts. The shards are not changed
+    public static <Item> List<Item> merge(List<ReservoirSampler<Item>> shards,
+                                          RandomSource random) {
+        if (shards == null || shards.isEmpty() || random == null) {
+            throw new IllegalArgumentException();
+        }
+        int k = Integer.MAX_VALUE;
+        long total = 0;
+        long[] left = new long[shards.size()];
+        for (int i = 0; i < left.length; i++) {
+            ReservoirSampler<Item> shard = shards.get(i);
+            if (shard.pending) throw new IllegalStateException("keep() not called");
+            k = Math.min(k, shard.reservoir.length);
+            left[i] = shard.count;
+            total += shard.count;
+        }
+
+        // how many of the k draws fall in each shard
+        int[] picks = new int[left.length];
+        int m = (int) Math.min(k, total);
+        for (int j = 0; j < m; j++) {
+            long r = random.nextLong(total);
+            int i = 0;
+            while (r >= left[i]) {
+                r -= left[i++];
+            }
+            picks[i]++;
+            left[i]--;
+            total--;
+        }
+
+        List<Item> merged = new ArrayList<Item>(m);
+        for (int i = 0; i < picks.length; i++) {
+            List<Item> sample = shards.get(i).sample();
+            for (int j = 0; j < picks[i]; j++) {
+                int r = j + random.nextInt(sample.size() - j);
+                Item item = sample.get(r);
+                sample.set(r, sample.get(j));
+                merged.add(item);
+            }
+        }
+        return merged;
+    }
+
+    // draw the gap to the next kept position: floor(log(U) / log(1 - W))
+    private void skip() {
+        double gap = Math.floor(logUniform() / Math.log1p(-Math.exp(logW)));
+        nextKept = gap >= Long.MAX_VALUE - count ? Long.MAX_VALUE : count + (long) gap;
+    }
+
+    // log of a uniform draw in (0, 1]
+    private double logUniform() {
+        return Math.log(1.0 - random.nextDouble());
+    }
+
+    // test client: every position is kept with probability k / N
+    public static void main(String[] args) {
+        int k = 5;
+        int n = 50;
+        int trials = 200000;
+        RandomSource random = RandomSource.seeded(1);
+        int[] kept = new int[n];
+        for (int t = 0; t < trials; t++) {
+            ReservoirSampler<Integer> sampler = new ReservoirSampler<Integer>(k, random);
+            for (int i = 0; i < n; i++) {
+                sampler.offer(i);
+            }
+            assert sampler.size() == k && sampler.count() == n : "Wrong size";
+            for (int i : sampler.sample()) kept[i]++;
+        }
+        double expected = (double) trials * k / n;
+        double chi2 = 0;
+        for (int c : kept) chi2 += (c - expected) * (c - expected) / expected;
+        StdOut.println(String.format("chi-square over %d positions: %.1f", n, chi2));
+
+        // two shards of 10 and 40 positions merge into a uniform sample of 50
+        int[] merged = new int[n];
+        for (int t = 0; t < trials; t++) {
+            ReservoirSampler<Integer> left = new ReservoirSampler<Integer>(k, random);
+            ReservoirSampler<Integer> right = new ReservoirSampler<Integer>(k, random);
+            for (int i = 0; i < n; i++) {
+                if (i < 10) left.offer(i);
+                else right.offer(i);
+            }
+            List<Integer> sample = merge(Arrays.asList(left, right), random);
+            assert sample.size() == k && sample.stream().distinct().count() == k : "Bad merge";
+            for (int i : sample) merged[i]++;
+        }
+        chi2 = 0;
+        for (int c : merged) chi2 += (c - expected) * (c - expected) / expected;
+        StdOut.println(String.format("chi-square of the merge over %d positions: %.1f", n, chi2));
+
+        ReservoirSampler<Integer> few = new ReservoirSampler<Integer>(k, random);
+        few.offer(1);
+        few.offer(2);
+        assert few.sample().size() == 2 : "Short stream not kept whole";
+        try {
+            new ReservoirSampler<Integer>(0, random);
+            assert false : "k = 0 accepted";
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/******************************************************************************
+ *  Compilation:  javac ResizingArrayDeque.java
+ *  Execution:    java ResizingArrayDeque
+ *  To enable execution with assertions: java -ea ResizingArrayDeque
+ *
+ *  Circular resizing-array implementation of a double-ended queue (deque),
+ *  with the same API as the linked-list Deque.
+ *
+ *  The items occupy a[first], a[first + 1], ..., a[first + n - 1], indices
+ *  taken modulo the capacity. The capacity is a power of two so that the
+ *  modulo is a bit mask. It doubles when the array is full and halves when
+ *  it is one-quarter full, so every operation is amortised O(1) and the
+ *  array is always at least 25% used (outside the minimum capacity).
+ *
+ *  Total memory usage for n items is between 8*n and 32*n + 48 bytes
+ *  (without the content of an item), against 48*n + 40 for Deque.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class ResizingArrayDeque<Item> implements Iterable<Item> {
+    private static final int MIN_CAPACITY = 8;
+
+    private Item[] a;       // circular array of items
+    private int first;      // index of the front item
+    private int n;          // size of the deque
+
+    // construct an empty deque
+    public ResizingArrayDeque() {
+        a = (Item[]) new Object[MIN_CAPACITY];
+        first = 0;
+        n = 0;
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        return n;
+    }
+
+    // add the item to the front
+    public void addFirst(Item item) {
+        if (item == null) throw new IllegalArgumentException("Attempt to add null in deque");
+        if (n == a.length) resize(2 * a.length);
+        first = (first - 1) & (a.length - 1);
+        a[first] = item;
+        n++;
+    }
+
+    // add the item to the back
+    public void addLast(Item item) {
+        if (item == null) throw new IllegalArgumentException("Attempt to add null in deque");
+        if (n == a.length) resize(2 * a.length);
+        a[(first + n) & (a.length - 1)] = item;
+        n++;
+    }
+
+    // remove and return the item from the front
+    public Item removeFirst() {
+        if (isEmpty()) throw new NoSuchElementException("Stack underflow");
+        Item item = a[first];
+        a[first] = null;                        // avoid loitering
+        first = (first + 1) & (a.length - 1);
+        n--;
+        shrinkIfSparse();
+        return item;
+    }
+
+    // remove and return the item from the back
+    public Item removeLast() {
+        if (isEmpty()) throw new NoSuchElementException("Stack underflow");
+        int last = (first + n - 1) & (a.length - 1);
+        Item item = a[last];
+        a[last] = null;                         // avoid loitering
+        n--;
+        shrinkIfSparse();
+        return item;
+    }
+
+    // halve the array once it is one-quarter full
+    private void shrinkIfSparse() {
+        if (a.length > MIN_CAPACITY && n == a.length / 4) resize(a.length / 2);
+    }
+
+    // move the items to a new array of the given capacity, front item at index 0
+    private void resize(int capacity) {
+        Item[] copy = (Item[]) new Object[capacity];
+        int head = Math.min(n, a.length - first);     // items before the wrap-around
+        System.arraycopy(a, first, copy, 0, head);
+        System.arraycopy(a, 0, copy, head, n - head);
+        a = copy;
+        first = 0;
+    }
+
+    // Return an iterator over items in order from front to back.
+    public Iterator<Item> iterator() {
+        return new ArrayIterator();
+    }
+
+    private class ArrayIterator implements Iterator<Item> {
+        private int i = 0;
+
+        // returns true if next() would return an element
+        public boolean hasNext() {
+            return i < n;
+        }
+
+        public Item next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return a[(first + i++) & (a.length - 1)];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static void main(String[] args) {
+        ResizingArrayDeque<String> objDeque = new ResizingArrayDeque<String>();
+        assert objDeque.isEmpty() : "Not Empty";
+        assert (objDeque.size() == 0) : "Size not 0";
+
+        String testString = "12345";
+        for (int i = 0; i < testString.length(); i++) {
+            char c = testString.charAt(i);
+            objDeque.addLast(String.valueOf(c));
+        }
+        while (!objDeque.isEmpty()) {
+            StdOut.println(objDeque.removeLast());
+        }
+        assert (objDeque.size() == 0) : "Size not 0";
+
+        objDeque.addFirst("addFirstTest");
+        StdOut.println(objDeque.removeFirst());
+        assert objDeque.isEmpty() : "Not Empty";
+
+        // wrap around the end of the array and grow / shrink through it
+        for (int i = 0; i < 100; i++) {
+            if (i % 2 == 0) objDeque.addFirst(String.valueOf(i));
+            else objDeque.addLast(String.valueOf(i));
+        }
+        assert objDeque.size() == 100 : "Size not 100";
+        assert objDeque.removeFirst().equals("98") : "Wrong front";
+        assert objDeque.removeLast().equals("99") : "Wrong back";
+        while (objDeque.size() > 2) {
+            objDeque.removeFirst();
+        }
+        assert objDeque.removeFirst().equals("95") : "Wrong order after shrinking";
+        assert objDeque.removeLast().equals("97") : "Wrong order after shrinking";
+
+        // test Iteration capability and foreach
+        String testStringIterable = "ITERABLE";
+        for (int i = 0; i < testStringIterable.length(); i++) {
+            char c = testStringIterable.charAt(i);
+            objDeque.addFirst(String.valueOf(c));
+        }
+        for (String s : objDeque)
+            StdOut.println(s);
+    }
+}
@@ -0,0 +1,236 @@
+/******************************************************************************
+ *  Compilation:  javac WeightedReservoirSampler.java
+ *  Execution:    java -ea WeightedReservoirSampler
+ *
+ *  Weighted sample of k items without replacement from a stream of unknown
+ *  length, with Efraimidis and Spirakis' A-ExpJ ("Weighted random sampling
+ *  with a reservoir", 2006).
+ *
+ *  Each item i gets the key u_i^(1 / w_i), u_i uniform in (0, 1), and the
+ *  sample is the k items with the largest keys. The reservoir is a min-heap
+ *  on the keys. Once it is full, A-ExpJ does not draw a key per item: it
+ *  draws how much weight to skip before the next item that beats the
+ *  smallest key, so a stream of N items costs O(k log(N / k)) random draws.
+ *  Keys are kept as log(u_i) / w_i, which orders the items the same way
+ *  and does not underflow for large weights.
+ *
+ *  As in ReservoirSampler, next(weight) consumes one position and says
+ *  whether its item is kept, and only then does the caller build the item
+ *  and pass it to keep().
+ *
+ *  The keys of different samplers are drawn the same way, so samplers of
+ *  disjoint streams merge by keeping the k largest keys of all of them.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class WeightedReservoirSampler<Item> {
+    private final Item[] items;      // heap of the kept items, smallest key first
+    private final double[] keys;     // log-keys of the kept items, same order
+    private final RandomSource random;
+    private int size;                // items in the reservoir, at most k
+    private long count;              // positions consumed by next()
+    private double totalWeight;      // sum of the weights of all positions
+    private double toSkip;           // weight still to skip before the next kept item
+    private double pendingWeight;    // weight of the position next() said to keep
+    private boolean pending;
+
+    // construct an empty sampler of k items
+    public WeightedReservoirSampler(int k, RandomSource random) {
+        if (k <= 0 || random == null) throw new IllegalArgumentException();
+        this.items = (Item[]) new Object[k];
+        this.keys = new double[k];
+        this.random = random;
+    }
+
+    // consume the next position, whose item has the given weight, true if the
+    // item must be passed to keep()
+    public boolean next(double weight) {
+        if (pending) throw new IllegalStateException("keep() not called");
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weights must be positive and finite");
+        }
+        count++;
+        totalWeight += weight;
+        if (size == items.length) {
+            toSkip -= weight;
+            if (toSkip > 0) return false;
+        }
+        pending = true;
+        pendingWeight = weight;
+        return true;
+    }
+
+    // store the item of the position for which next() returned true
+    public void keep(Item item) {
+        if (!pending) throw new IllegalStateException("next() did not ask for an item");
+        if (item == null) throw new IllegalArgumentException();
+        pending = false;
+        double w = pendingWeight;
+        int k = items.length;
+        if (size < k) {
+            items[size] = item;
+            keys[size] = logUniform() / w;
+            swim(size++);
+            if (size == k) drawSkip();
+            return;
+        }
+        // the new key is uniform among the keys that beat the smallest one:
+        // u in (t, 1) with t = T^w, T the smallest key
+        double t = Math.exp(w * keys[0]);
+        double u = t + (1.0 - t) * random.nextDouble();
+        items[0] = item;
+        keys[0] = Math.min(Math.log(u) / w, 0.0);
+        sink(0);
+        drawSkip();
+    }
+
+    // offer an item the caller already has: next() and keep() in one call
+    public void offer(Item item, double weight) {
+        if (next(weight)) keep(item);
+    }
+
+    // number of positions consumed
+    public long count() {
+        return count;
+    }
+
+    // total weight of the positions consumed
+    public double totalWeight() {
+        return totalWeight;
+    }
+
+    // number of items in the reservoir, min(k, count())
+    public int size() {
+        return size;
+    }
+
+    // copy of the reservoir, in no particular order
+    public List<Item> sample() {
+        return new ArrayList<Item>(Arrays.asList(items).subList(0, size));
+    }
+
+    // weighted sample of the union of the shards' streams: the items with
+    // the k largest keys, k the smallest reservoir size of the shards.
+    // The shards are not changed
+    public static <Item> List<Item> merge(List<WeightedReservoirSampler<Item>> shards) {
+        if (shards == null || shards.isEmpty()) throw new IllegalArgumentException();
+        int k = Integer.MAX_VALUE;
+        int kept = 0;
+        for (WeightedReservoirSampler<Item> shard : shards) {
+            if (shard.pending) throw new IllegalStateException("keep() not called");
+            k = Math.min(k, shard.items.length);
+            kept += shard.size;
+        }
+        Integer[] order = new Integer[kept];
+        double[] keys = new double[kept];
+        List<Item> items = new ArrayList<Item>(kept);
+        for (WeightedReservoirSampler<Item> shard : shards) {
+            for (int i = 0; i < shard.size; i++) {
+                keys[items.size()] = shard.keys[i];
+                order[items.size()] = items.size();
+                items.add(shard.items[i]);
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(keys[b], keys[a]));
+        List<Item> merged = new ArrayList<Item>(Math.min(k, kept));
+        for (int i = 0; i < Math.min(k, kept); i++) {
+            merged.add(items.get(order[i]));
+        }
+        return merged;
+    }
+
+    // weight to skip: log(U) / log(T), T the smallest key
+    private void drawSkip() {
+        toSkip = logUniform() / keys[0];
+    }
+
+    // log of a uniform draw in (0, 1]
+    private double logUniform() {
+        return Math.log(1.0 - random.nextDouble());
+    }
+
+    private void swim(int i) {
+        while (i > 0 && keys[(i - 1) / 2] > keys[i]) {
+            exchange(i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private void sink(int i) {
+        while (2 * i + 1 < size) {
+            int j = 2 * i + 1;
+            if (j + 1 < size && keys[j + 1] < keys[j]) j++;
+            if (keys[i] <= keys[j]) break;
+            exchange(i, j);
+            i = j;
+        }
+    }
+
+    private void exchange(int i, int j) {
+        Item item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+    }
+
+    // test client: with k = 1 every position is kept with probability
+    // proportional to its weight
+    public static void main(String[] args) {
+        int n = 20;
+        int trials = 200000;
+        RandomSource random = RandomSource.seeded(1);
+        int[] kept = new int[n];
+        double total = n * (n + 1) / 2.0;
+        for (int t = 0; t < trials; t++) {
+            WeightedReservoirSampler<Integer> sampler =
+                    new WeightedReservoirSampler<Integer>(1, random);
+            for (int i = 0; i < n; i++) {
+                sampler.offer(i, i + 1);
+            }
+            assert sampler.totalWeight() == total : "Wrong total weight";
+            kept[sampler.sample().get(0)]++;
+        }
+        double chi2 = 0;
+        for (int i = 0; i < n; i++) {
+            double expected = trials * (i + 1) / total;
+            chi2 += (kept[i] - expected) * (kept[i] - expected) / expected;
+        }
+        StdOut.println(String.format("chi-square over %d weights: %.1f", n, chi2));
+
+        // the same stream split in two shards gives the same distribution
+        int[] merged = new int[n];
+        for (int t = 0; t < trials; t++) {
+            WeightedReservoirSampler<Integer> left =
+                    new WeightedReservoirSampler<Integer>(1, random);
+            WeightedReservoirSampler<Integer> right =
+                    new WeightedReservoirSampler<Integer>(1, random);
+            for (int i = 0; i < n; i++) {
+                if (i % 3 == 0) left.offer(i, i + 1);
+                else right.offer(i, i + 1);
+            }
+            merged[merge(Arrays.asList(left, right)).get(0)]++;
+        }
+        chi2 = 0;
+        for (int i = 0; i < n; i++) {
+            double expected = trials * (i + 1) / total;
+            chi2 += (merged[i] - expected) * (merged[i] - expected) / expected;
+        }
+        StdOut.println(String.format("chi-square of the merge over %d weights: %.1f", n, chi2));
+
+        // equal weights reduce to a uniform sample
+        WeightedReservoirSampler<Integer> uniform =
+                new WeightedReservoirSampler<Integer>(10, random);
+        for (int i = 0; i < 100000; i++) {
+            uniform.offer(i, 1.0);
+        }
+        assert uniform.size() == 10 && uniform.count() == 100000 : "Wrong size";
+        assert uniform.sample().stream().distinct().count() == 10 : "Item kept twice";
+    }
+}
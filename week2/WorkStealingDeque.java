@@ -0,0 +1,159 @@
+/******************************************************************************
+ *  Compilation:  javac WorkStealingDeque.java
+ *  Execution:    java WorkStealingDeque threads
+ *
+ *  Lock-free work-stealing deque (Chase and Lev, "Dynamic Circular
+ *  Work-Stealing Deque", SPAA 2005; memory ordering after Le et al., PPoPP 2013).
+ *
+ *  One owner thread calls push() and pop() at the bottom end, any number of
+ *  thief threads call steal() at the top end:
+ *  - push() and pop() are plain array accesses plus a volatile write of
+ *    bottom, except when pop() races thieves for the last item, which is
+ *    settled by a compareAndSet on top;
+ *  - steal() is one compareAndSet on top. It returns null when the deque is
+ *    empty or when another thread won the race for that item;
+ *  - items live in a circular array whose capacity is a power of two. Only
+ *    the owner grows it, by copying the live range into an array twice the
+ *    size, so thieves still reading the old array see the same items.
+ *
+ *  pop() clears the slot it takes. A stolen slot keeps its reference until
+ *  the owner overwrites it, since clearing it from the thief side could erase
+ *  an item the owner has meanwhile pushed into the same slot.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class WorkStealingDeque<Item> {
+    private static final int MIN_CAPACITY = 16;
+
+    private final AtomicLong top = new AtomicLong();     // next index to steal
+    private volatile long bottom;                         // next index to push
+    private volatile AtomicReferenceArray<Item> array;   // circular, power-of-two length
+
+    // construct an empty deque
+    public WorkStealingDeque() {
+        array = new AtomicReferenceArray<Item>(MIN_CAPACITY);
+    }
+
+    // is the deque empty? A snapshot only, the answer may be stale by the time it is used
+    public boolean isEmpty() {
+        return bottom - top.get() <= 0;
+    }
+
+    // number of items, a snapshot only
+    public int size() {
+        long n = bottom - top.get();
+        return n <= 0 ? 0 : (int) n;
+    }
+
+    // add the item at the bottom, owner thread only
+    public void push(Item item) {
+        if (item == null) throw new IllegalArgumentException("Attempt to add null in deque");
+        long b = bottom;
+        long t = top.get();
+        AtomicReferenceArray<Item> a = array;
+        if (b - t > a.length() - 1) {
+            a = grow(a, b, t);
+        }
+        a.set((int) b & (a.length() - 1), item);
+        bottom = b + 1;                     // volatile write publishes the item
+    }
+
+    // remove and return the item at the bottom, null if empty, owner thread only
+    public Item pop() {
+        long b = bottom - 1;
+        AtomicReferenceArray<Item> a = array;
+        bottom = b;                         // volatile write, then volatile read of top:
+        long t = top.get();                 // the two cannot be reordered
+        if (t > b) {
+            bottom = b + 1;                 // empty
+            return null;
+        }
+        int slot = (int) b & (a.length() - 1);
+        Item item = a.get(slot);
+        if (t == b) {
+            // last item: the thieves may be after it too
+            if (!top.compareAndSet(t, t + 1)) item = null;
+            bottom = b + 1;
+            return item;
+        }
+        a.set(slot, null);                  // avoid loitering, no thief can reach index b
+        return item;
+    }
+
+    // remove and return the item at the top, null if empty or if another
+    // thread took it first, any thread
+    public Item steal() {
+        long t = top.get();
+        long b = bottom;
+        if (t >= b) return null;
+        AtomicReferenceArray<Item> a = array;
+        Item item = a.get((int) t & (a.length() - 1));
+        if (!top.compareAndSet(t, t + 1)) return null;
+        return item;
+    }
+
+    // copy items [t, b) into an array twice as large and publish it
+    private AtomicReferenceArray<Item> grow(AtomicReferenceArray<Item> a, long b, long t) {
+        AtomicReferenceArray<Item> bigger = new AtomicReferenceArray<Item>(2 * a.length());
+        for (long i = t; i < b; i++) {
+            bigger.set((int) i & (bigger.length() - 1), a.get((int) i & (a.length() - 1)));
+        }
+        array = bigger;
+        return bigger;
+    }
+
+    // test client: the owner pushes and pops while the thieves steal,
+    // every item must come out exactly once
+    public static void main(String[] args) throws InterruptedException {
+        int nbThieves = Integer.parseInt(args[0]);
+        int n = 1000000;
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+        boolean[] seen = new boolean[n];
+        int[] stolen = new int[nbThieves];
+        Thread[] thieves = new Thread[nbThieves];
+        AtomicBoolean done = new AtomicBoolean();
+        for (int t = 0; t < nbThieves; t++) {
+            int id = t;
+            thieves[t] = new Thread(() -> {
+                while (!done.get() || !deque.isEmpty()) {
+                    Integer item = deque.steal();
+                    if (item != null) {
+                        synchronized (seen) {
+                            assert !seen[item] : "Item stolen twice";
+                            seen[item] = true;
+                        }
+                        stolen[id]++;
+                    }
+                }
+            });
+            thieves[t].start();
+        }
+        int popped = 0;
+        for (int i = 0; i < n; i++) {
+            deque.push(i);
+            if (i % 3 == 0) {
+                Integer item = deque.pop();
+                if (item != null) {
+                    synchronized (seen) {
+                        assert !seen[item] : "Item popped twice";
+                        seen[item] = true;
+                    }
+                    popped++;
+                }
+            }
+        }
+        done.set(true);
+        for (Thread thief : thieves) {
+            thief.join();
+        }
+        int total = popped;
+        for (int s : stolen) total += s;
+        for (boolean s : seen) assert s : "Item lost";
+        StdOut.println(String.format("popped %d, stolen %d, total %d", popped, total - popped, total));
+    }
+}
@@ -0,0 +1,108 @@
+/******************************************************************************
+ *  Compilation:  javac Xoshiro256.java
+ *  Execution:    java Xoshiro256 seed
+ *
+ *  The xoshiro256** generator of Blackman and Vigna ("Scrambled Linear
+ *  Pseudorandom Number Generators", 2018): 256 bits of state, period
+ *  2^256 - 1, a few shifts, rotations and one multiplication per draw.
+ *
+ *  The state is filled from the 64-bit seed with SplitMix64, which never
+ *  leaves it all zero. An instance is not thread-safe. current() returns
+ *  a generator owned by the calling thread; each thread's generator is
+ *  seeded from a shared counter scrambled by SplitMix64, so threads draw
+ *  from unrelated sequences without ever touching shared state again. A
+ *  seed uses four steps of the counter, one per state word, so the counter
+ *  moves four steps per thread and no two threads share a state word.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Xoshiro256 implements RandomSource {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // seeds of the per-thread generators, 4 gammas apart since a seed
+    // expands into the 4 gammas after it
+    private static final AtomicLong SEEDS = new AtomicLong(mix(System.nanoTime()));
+    private static final ThreadLocal<Xoshiro256> CURRENT =
+            ThreadLocal.withInitial(() -> new Xoshiro256(SEEDS.getAndAdd(4 * GOLDEN_GAMMA)));
+
+    private long s0, s1, s2, s3;
+
+    // construct a generator whose sequence only depends on seed
+    public Xoshiro256(long seed) {
+        s0 = mix(seed += GOLDEN_GAMMA);
+        s1 = mix(seed += GOLDEN_GAMMA);
+        s2 = mix(seed += GOLDEN_GAMMA);
+        s3 = mix(seed + GOLDEN_GAMMA);
+    }
+
+    // generator of the calling thread
+    public static Xoshiro256 current() {
+        return CURRENT.get();
+    }
+
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    // SplitMix64 finaliser (Stafford's Mix13)
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // the state words of a fresh generator of a new thread
+    private static long[] freshThreadState() throws InterruptedException {
+        long[] state = new long[4];
+        Thread thread = new Thread(() -> {
+            Xoshiro256 g = current();
+            state[0] = g.s0;
+            state[1] = g.s1;
+            state[2] = g.s2;
+            state[3] = g.s3;
+        });
+        thread.start();
+        thread.join();
+        return state;
+    }
+
+    // test client: same seed, same sequence; bounded draws stay in range;
+    // the generators of two new threads share no state word
+    public static void main(String[] args) throws InterruptedException {
+        long seed = Long.parseLong(args[0]);
+        Xoshiro256 a = new Xoshiro256(seed);
+        Xoshiro256 b = new Xoshiro256(seed);
+        for (int i = 0; i < 1000; i++) {
+            assert a.nextLong() == b.nextLong() : "Same seed, different sequence";
+        }
+        int[] counts = new int[6];
+        for (int i = 0; i < 600000; i++) {
+            int die = a.nextInt(6);
+            assert die >= 0 && die < 6 : "Out of range";
+            counts[die]++;
+        }
+        for (int face = 0; face < 6; face++) {
+            StdOut.println(String.format("%d: %d", face + 1, counts[face]));
+        }
+        assert current() == current() : "Thread generator changed";
+
+        long[] first = freshThreadState();
+        long[] second = freshThreadState();
+        for (long x : first) {
+            for (long y : second) {
+                assert x != y : "Thread generators share a state word";
+            }
+        }
+    }
+}